@@ -19,23 +19,35 @@ import com.gmail.filoghost.chestcommands.bridge.BarAPIBridge;
 import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
 import com.gmail.filoghost.chestcommands.bridge.PlaceholderAPIBridge;
 import com.gmail.filoghost.chestcommands.command.CommandHandler;
+import com.gmail.filoghost.chestcommands.command.MenuCommandRegistry;
 import com.gmail.filoghost.chestcommands.command.framework.CommandFramework;
 import com.gmail.filoghost.chestcommands.config.AsciiPlaceholders;
 import com.gmail.filoghost.chestcommands.config.Lang;
 import com.gmail.filoghost.chestcommands.config.Settings;
 import com.gmail.filoghost.chestcommands.config.yaml.PluginConfig;
 import com.gmail.filoghost.chestcommands.internal.BoundItem;
+import com.gmail.filoghost.chestcommands.internal.BoundItemIndex;
 import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
 import com.gmail.filoghost.chestcommands.internal.MenuData;
 import com.gmail.filoghost.chestcommands.internal.MenuInventoryHolder;
+import com.gmail.filoghost.chestcommands.internal.PermissionCache;
+import com.gmail.filoghost.chestcommands.internal.SignIndex;
+import com.gmail.filoghost.chestcommands.internal.SkullCache;
+import com.gmail.filoghost.chestcommands.internal.TranslationCache;
+import com.gmail.filoghost.chestcommands.internal.VariableManager;
+import com.gmail.filoghost.chestcommands.internal.ViewerRegistry;
+import com.gmail.filoghost.chestcommands.internal.icon.Purchase;
 import com.gmail.filoghost.chestcommands.listener.CommandListener;
 import com.gmail.filoghost.chestcommands.listener.InventoryListener;
 import com.gmail.filoghost.chestcommands.listener.JoinListener;
+import com.gmail.filoghost.chestcommands.listener.PermissionCacheListener;
 import com.gmail.filoghost.chestcommands.listener.SignListener;
 import com.gmail.filoghost.chestcommands.serializer.CommandSerializer;
 import com.gmail.filoghost.chestcommands.serializer.MenuSerializer;
+import com.gmail.filoghost.chestcommands.task.ClickDispatcher;
 import com.gmail.filoghost.chestcommands.task.ErrorLoggerTask;
 import com.gmail.filoghost.chestcommands.task.RefreshMenusTask;
+import com.gmail.filoghost.chestcommands.task.RefreshWorker;
 import com.gmail.filoghost.chestcommands.util.BukkitUtils;
 import com.gmail.filoghost.chestcommands.util.CaseInsensitiveMap;
 import com.gmail.filoghost.chestcommands.util.ErrorLogger;
@@ -53,7 +65,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,7 +79,16 @@ public class ChestCommands extends JavaPlugin {
 	private static Map<String, ExtendedIconMenu> fileNameToMenuMap;
 	private static Map<String, ExtendedIconMenu> commandsToMenuMap;
 
-	private static Set<BoundItem> boundItems;
+	private static BoundItemIndex boundItems;
+
+	private static RefreshMenusTask refreshMenusTask;
+	private static ViewerRegistry viewerRegistry;
+	private static TranslationCache translationCache;
+	private static SkullCache skullCache;
+	private static PermissionCache permissionCache;
+	private static SignIndex signIndex;
+	private static MenuCommandRegistry menuCommandRegistry;
+	private static ClickDispatcher clickDispatcher;
 
 	private static int lastReloadErrors;
 	private static String newVersion;
@@ -77,11 +97,11 @@ public class ChestCommands extends JavaPlugin {
 	public static LLBInterface l;
 
 	public static final String translate(Player player, String key){
+		return translationCache.translate(player, key);
+	}
 
-		if(key.isEmpty())
-			return key;
-
-		return l.getPlayerString(player.getName(),key);
+	public static boolean hasTranslations() {
+		return l != null;
 	}
 
 	@Override
@@ -97,7 +117,17 @@ public class ChestCommands extends JavaPlugin {
 
 		fileNameToMenuMap = CaseInsensitiveMap.create();
 		commandsToMenuMap = CaseInsensitiveMap.create();
-		boundItems = Utils.newHashSet();
+		boundItems = new BoundItemIndex();
+		refreshMenusTask = new RefreshMenusTask();
+		viewerRegistry = new ViewerRegistry(refreshMenusTask);
+		translationCache = new TranslationCache(l);
+		permissionCache = new PermissionCache();
+		skullCache = new SkullCache(this);
+		skullCache.load();
+		signIndex = new SignIndex(this);
+		signIndex.load();
+		menuCommandRegistry = new MenuCommandRegistry(this);
+		clickDispatcher = new ClickDispatcher();
 
 		settings = new Settings(new PluginConfig(this, "config.yml"));
 		lang = new Lang(new PluginConfig(this, "lang.yml"));
@@ -140,6 +170,7 @@ public class ChestCommands extends JavaPlugin {
 		Bukkit.getPluginManager().registerEvents(new InventoryListener(), this);
 		Bukkit.getPluginManager().registerEvents(new JoinListener(), this);
 		Bukkit.getPluginManager().registerEvents(new SignListener(), this);
+		Bukkit.getPluginManager().registerEvents(new PermissionCacheListener(), this);
 
 		CommandFramework.register(this, new CommandHandler("chestcommands"));
 
@@ -151,13 +182,31 @@ public class ChestCommands extends JavaPlugin {
 			Bukkit.getScheduler().scheduleSyncDelayedTask(this, new ErrorLoggerTask(errorLogger), 10L);
 		}
 
-		Bukkit.getScheduler().scheduleSyncRepeatingTask(this, new RefreshMenusTask(), 2L, 2L);
+		if (settings.refresh_threads > 0) {
+			refreshMenusTask.setWorker(new RefreshWorker(settings.refresh_threads));
+		}
+		Bukkit.getScheduler().scheduleSyncRepeatingTask(this, refreshMenusTask, 2L, 2L);
+		Bukkit.getScheduler().scheduleSyncRepeatingTask(this, clickDispatcher, 1L, 1L);
+		skullCache.startAutoSave();
 	}
 
 
 	@Override
 	public void onDisable() {
+		Purchase.rollbackAll();
 		closeAllMenus();
+		if (refreshMenusTask != null) {
+			refreshMenusTask.setWorker(null);
+		}
+		if (skullCache != null) {
+			skullCache.shutdown();
+		}
+		if (signIndex != null) {
+			signIndex.save();
+		}
+		if (menuCommandRegistry != null) {
+			menuCommandRegistry.unregisterAll();
+		}
 	}
 
 
@@ -165,6 +214,13 @@ public class ChestCommands extends JavaPlugin {
 		fileNameToMenuMap.clear();
 		commandsToMenuMap.clear();
 		boundItems.clear();
+		viewerRegistry.clear();
+		translationCache.invalidateAll();
+		VariableManager.clearCache();
+		permissionCache.invalidateAll();
+		skullCache.save();
+		signIndex.clearMenus();
+		signIndex.save();
 
 		CommandSerializer.checkClassConstructors(errorLogger);
 
@@ -247,6 +303,7 @@ public class ChestCommands extends JavaPlugin {
 			}
 
 			iconMenu.setRefreshTicks(data.getRefreshTenths());
+			iconMenu.setClickCooldown(data.getClickCooldown());
 
 			if (data.getOpenActions() != null) {
 				iconMenu.setOpenActions(data.getOpenActions());
@@ -261,6 +318,8 @@ public class ChestCommands extends JavaPlugin {
 			}
 		}
 
+		menuCommandRegistry.registerAll(commandsToMenuMap);
+
 		// Register the BungeeCord plugin channel
 		if (!Bukkit.getMessenger().isOutgoingChannelRegistered(this, "BungeeCord")) {
 			Bukkit.getMessenger().registerOutgoingPluginChannel(this, "BungeeCord");
@@ -325,10 +384,38 @@ public class ChestCommands extends JavaPlugin {
 		return commandsToMenuMap;
 	}
 
-	public static Set<BoundItem> getBoundItems() {
+	public static BoundItemIndex getBoundItems() {
 		return boundItems;
 	}
 
+	public static ViewerRegistry getViewerRegistry() {
+		return viewerRegistry;
+	}
+
+	public static PermissionCache getPermissionCache() {
+		return permissionCache;
+	}
+
+	public static ClickDispatcher getClickDispatcher() {
+		return clickDispatcher;
+	}
+
+	public static MenuCommandRegistry getMenuCommandRegistry() {
+		return menuCommandRegistry;
+	}
+
+	public static SignIndex getSignIndex() {
+		return signIndex;
+	}
+
+	public static SkullCache getSkullCache() {
+		return skullCache;
+	}
+
+	public static TranslationCache getTranslationCache() {
+		return translationCache;
+	}
+
 	public static int getLastReloadErrors() {
 		return lastReloadErrors;
 	}
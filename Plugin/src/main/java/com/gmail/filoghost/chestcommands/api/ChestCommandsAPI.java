@@ -15,6 +15,9 @@
 package com.gmail.filoghost.chestcommands.api;
 
 import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
+import com.gmail.filoghost.chestcommands.internal.Variable;
+import com.gmail.filoghost.chestcommands.util.MenuUtils;
 import org.bukkit.entity.Player;
 
 public class ChestCommandsAPI {
@@ -46,4 +49,73 @@ public class ChestCommandsAPI {
 			return false;
 		}
 	}
+
+	/**
+	 * Discards the cached permissions of a player, used for the view and click permissions of icons.
+	 * Should be called by permission plugins when the permissions of a player change.
+	 *
+	 * @param player - the player whose permissions changed.
+	 */
+	public static void invalidatePermissions(Player player) {
+		ChestCommands.getPermissionCache().invalidate(player);
+	}
+
+	/**
+	 * Discards the cached translations of a player.
+	 * Should be called by language plugins when a player changes language.
+	 *
+	 * @param player - the player that changed language.
+	 */
+	public static void invalidateTranslations(Player player) {
+		ChestCommands.getTranslationCache().invalidate(player);
+	}
+
+	/**
+	 * Discards all the cached translations.
+	 * Should be called by language plugins after reloading their messages.
+	 */
+	public static void invalidateTranslations() {
+		ChestCommands.getTranslationCache().invalidateAll();
+	}
+
+	/**
+	 * Updates the icons displaying {money} in the menu the player is looking at.
+	 * Should be called when the balance of a player is changed by another plugin.
+	 *
+	 * @param player - the player whose balance changed.
+	 */
+	public static void refreshBalance(Player player) {
+		if (!EconomyBridge.hasValidEconomy()) {
+			return;
+		}
+
+		EconomyBridge.invalidateMoney(player);
+		if (EconomyBridge.isPrefetchEnabled()) {
+			// The icons are refreshed when the new balance has been read
+			EconomyBridge.prefetchMoney(player);
+		} else {
+			MenuUtils.refreshMenu(player, Variable.MONEY);
+		}
+	}
+
+	/**
+	 * Updates the icons displaying the placeholders of PlaceholderAPI with the given identifier,
+	 * in the menu the player is looking at.
+	 *
+	 * @param player     - the player whose placeholder changed.
+	 * @param identifier - the identifier of the placeholders, the part before the first underscore.
+	 */
+	public static void refreshPlaceholder(Player player, String identifier) {
+		MenuUtils.refreshMenu(player, identifier);
+	}
+
+	/**
+	 * Updates the icons displaying the placeholders of PlaceholderAPI with the given identifier, in all the open menus.
+	 * Should be called when a value shared by all the players changes.
+	 *
+	 * @param identifier - the identifier of the placeholders, the part before the first underscore.
+	 */
+	public static void refreshPlaceholder(String identifier) {
+		MenuUtils.refreshAllMenus(identifier);
+	}
 }
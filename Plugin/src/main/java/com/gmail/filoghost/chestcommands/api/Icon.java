@@ -15,9 +15,13 @@
 package com.gmail.filoghost.chestcommands.api;
 
 import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.internal.CompiledText;
+import com.gmail.filoghost.chestcommands.internal.RenderCycle;
+import com.gmail.filoghost.chestcommands.internal.TranslationCache;
+import com.gmail.filoghost.chestcommands.internal.Variable;
 import com.gmail.filoghost.chestcommands.internal.VariableManager;
+import com.gmail.filoghost.chestcommands.util.ItemUtils;
 import com.gmail.filoghost.chestcommands.util.Utils;
-import ee.winni.plugins.languageslib.LLB;
 import org.bukkit.*;
 import org.bukkit.block.banner.Pattern;
 import org.bukkit.enchantments.Enchantment;
@@ -29,10 +33,12 @@ import org.bukkit.inventory.meta.LeatherArmorMeta;
 import org.bukkit.inventory.meta.SkullMeta;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 public class Icon {
@@ -57,6 +63,26 @@ public class Icon {
 	private boolean[] loreLinesWithVariables;
 	private boolean skullOwnerHasVariables;
 
+	private CompiledText compiledName;
+	private CompiledText[] compiledLore;
+	private CompiledText compiledSkullOwner;
+
+	// If the lore only contains variables like {online}, it is calculated once for all the players
+	private boolean loreIsGlobal;
+	private volatile RenderCycle.Cached<List<String>> sharedLore;
+
+	// Language -> lore without variables, already translated
+	private Map<String, List<String>> translatedLore;
+	private int translatedLoreGeneration;
+
+	// The prepared item of static icons
+	private ItemStack template;
+	private boolean templateCompiled;
+	private int templateVersion;
+
+	// The parts of the item that are the same for every render
+	private volatile ItemPrototype prototype;
+
 	public Icon() {
 		enchantments = new HashMap<Enchantment, Integer>();
 		closeOnClick = true;
@@ -67,9 +93,85 @@ public class Icon {
 		return nameHasVariables || loreLinesWithVariables != null || skullOwnerHasVariables;
 	}
 
+	/**
+	 * Returns true if the name, a line of the lore or the skull owner contain the variable.
+	 */
+	public boolean dependsOn(Variable variable) {
+		if (nameHasVariables && compiledName.dependsOn(variable)) {
+			return true;
+		}
+		if (skullOwnerHasVariables && compiledSkullOwner.dependsOn(variable)) {
+			return true;
+		}
+		if (compiledLore != null) {
+			for (CompiledText line : compiledLore) {
+				if (line != null && line.dependsOn(variable)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Same as {@link #dependsOn(Variable)}, for the placeholders of PlaceholderAPI with the given identifier.
+	 */
+	public boolean dependsOnPlaceholder(String identifier) {
+		if (nameHasVariables && compiledName.dependsOnPlaceholder(identifier)) {
+			return true;
+		}
+		if (skullOwnerHasVariables && compiledSkullOwner.dependsOnPlaceholder(identifier)) {
+			return true;
+		}
+		if (compiledLore != null) {
+			for (CompiledText line : compiledLore) {
+				if (line != null && line.dependsOnPlaceholder(identifier)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the name or the lore could be translated differently for each player.
+	 */
+	public boolean hasTranslations() {
+		return ChestCommands.hasTranslations() && (hasName() || hasLore());
+	}
+
+	/**
+	 * Returns true if the displayed item is the same for every player.
+	 */
+	public boolean isStatic() {
+		return !hasVariables() && !hasTranslations();
+	}
+
+	/**
+	 * Returns true if the name and the lore can be calculated outside the main thread.
+	 */
+	public boolean isAsyncSafe() {
+		if (hasTranslations()) {
+			// The language plugin may not be thread safe
+			return false;
+		}
+		if (nameHasVariables && !compiledName.isAsyncSafe()) {
+			return false;
+		}
+		if (compiledLore != null) {
+			for (CompiledText compiledLine : compiledLore) {
+				if (compiledLine != null && !compiledLine.isAsyncSafe()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	public void setMaterial(Material material) {
 		if (material == Material.AIR) material = null;
 		this.material = material;
+		invalidateTemplate();
 	}
 
 	public Material getMaterial() {
@@ -81,6 +183,7 @@ public class Icon {
 		else if (amount > 127) amount = 127;
 
 		this.amount = amount;
+		invalidateTemplate();
 	}
 
 	public int getAmount() {
@@ -91,6 +194,7 @@ public class Icon {
 		if (dataValue < 0) dataValue = 0;
 
 		this.dataValue = dataValue;
+		invalidateTemplate();
 	}
 
 	public short getDataValue() {
@@ -99,6 +203,7 @@ public class Icon {
 
 	public void setNBTData(String nbtData) {
 		this.nbtData = nbtData;
+		invalidateTemplate();
 	}
 
 	public String getNBTData() {
@@ -107,7 +212,9 @@ public class Icon {
 
 	public void setName(String name) {
 		this.name = name;
-		this.nameHasVariables = VariableManager.hasVariables(name);
+		this.compiledName = CompiledText.compile(name);
+		this.nameHasVariables = compiledName != null && compiledName.hasVariables();
+		invalidateTemplate();
 	}
 
 	public boolean hasName() {
@@ -123,14 +230,31 @@ public class Icon {
 	public void setLore(List<String> lore) {
 		this.lore = lore;
 		this.loreLinesWithVariables = null;
+		this.compiledLore = null;
+		this.loreIsGlobal = false;
+		this.sharedLore = null;
+		this.translatedLore = null;
+		invalidateTemplate();
 
 		if (lore != null) {
 			for (int i = 0; i < lore.size(); i++) {
-				if (VariableManager.hasVariables(lore.get(i))) {
+				CompiledText compiledLine = CompiledText.compile(lore.get(i));
+				if (compiledLine != null && compiledLine.hasVariables()) {
 					if (this.loreLinesWithVariables == null) {
 						this.loreLinesWithVariables = new boolean[lore.size()];
+						this.compiledLore = new CompiledText[lore.size()];
 					}
 					loreLinesWithVariables[i] = true;
+					compiledLore[i] = compiledLine;
+				}
+			}
+		}
+
+		if (compiledLore != null) {
+			loreIsGlobal = true;
+			for (CompiledText compiledLine : compiledLore) {
+				if (compiledLine != null && !compiledLine.isGlobal()) {
+					loreIsGlobal = false;
 				}
 			}
 		}
@@ -145,6 +269,7 @@ public class Icon {
 	}
 
 	public void setEnchantments(Map<Enchantment, Integer> enchantments) {
+		invalidateTemplate();
 		if (enchantments == null) {
 			this.enchantments.clear();
 			return;
@@ -162,14 +287,17 @@ public class Icon {
 
 	public void addEnchantment(Enchantment ench, Integer level) {
 		enchantments.put(ench, level);
+		invalidateTemplate();
 	}
 
 	public void removeEnchantment(Enchantment ench) {
 		enchantments.remove(ench);
+		invalidateTemplate();
 	}
 
 	public void clearEnchantments() {
 		enchantments.clear();
+		invalidateTemplate();
 	}
 
 	public Color getColor() {
@@ -178,6 +306,7 @@ public class Icon {
 
 	public void setColor(Color color) {
 		this.color = color;
+		invalidateTemplate();
 	}
 
 	public String getSkullOwner() {
@@ -186,7 +315,9 @@ public class Icon {
 
 	public void setSkullOwner(String skullOwner) {
 		this.skullOwner = skullOwner;
-		this.skullOwnerHasVariables = VariableManager.hasVariables(skullOwner);
+		this.compiledSkullOwner = CompiledText.compile(skullOwner);
+		this.skullOwnerHasVariables = compiledSkullOwner != null && compiledSkullOwner.hasVariables();
+		invalidateTemplate();
 	}
 
 	public DyeColor getBannerColor() {
@@ -195,6 +326,7 @@ public class Icon {
 
 	public void setBannerColor(DyeColor bannerColor) {
 		this.bannerColor = bannerColor;
+		invalidateTemplate();
 	}
 
 	public List<Pattern> getBannerPatterns() {
@@ -203,6 +335,7 @@ public class Icon {
 
 	public void setBannerPatterns(List<Pattern> bannerPatterns) {
 		this.bannerPatterns = bannerPatterns;
+		invalidateTemplate();
 	}
 
 	public void setCloseOnClick(boolean closeOnClick) {
@@ -224,7 +357,7 @@ public class Icon {
 			String name = ChestCommands.translate(pov, this.name);
 
 			if (pov != null && nameHasVariables) {
-				name = VariableManager.setVariables(name, pov);
+				name = setVariables(compiledName, name, pov);
 			}
 
 
@@ -241,8 +374,77 @@ public class Icon {
 
 	}
 
+	private static String setVariables(CompiledText compiled, String translated, Player pov) {
+		if (translated.equals(compiled.getSource())) {
+			return compiled.render(pov);
+		}
+
+		// The translation is a different string, which was not compiled
+		return VariableManager.setVariables(translated, pov);
+	}
+
+	protected String calculateSkullOwner(Player pov) {
+		if (skullOwnerHasVariables) {
+			return pov != null ? compiledSkullOwner.render(pov) : null;
+		}
+		return skullOwner;
+	}
+
 	protected List<String> calculateLore(Player pov) {
 
+		if (pov != null && loreIsGlobal && !hasTranslations()) {
+			// The same lore is displayed to everyone, share it between the viewers
+			RenderCycle.Cached<List<String>> sharedLore = this.sharedLore;
+			if (sharedLore == null || !sharedLore.isValid()) {
+				sharedLore = new RenderCycle.Cached<List<String>>(Collections.unmodifiableList(buildLore(pov)));
+				this.sharedLore = sharedLore;
+			}
+			return sharedLore.getValue();
+		}
+
+		return buildLore(pov);
+	}
+
+	private List<String> getTranslatedLore(Player pov) {
+		if (pov == null || !ChestCommands.hasTranslations()) {
+			return lore;
+		}
+
+		TranslationCache translationCache = ChestCommands.getTranslationCache();
+		String language = translationCache.getLanguage(pov);
+
+		if (!translationCache.isSharedLanguage(language)) {
+			// Do not keep a copy for each player
+			return translateLines(pov);
+		}
+
+		Map<String, List<String>> translatedLore;
+		synchronized (this) {
+			if (this.translatedLore == null || translatedLoreGeneration != translationCache.getGeneration()) {
+				this.translatedLore = new ConcurrentHashMap<String, List<String>>();
+				this.translatedLoreGeneration = translationCache.getGeneration();
+			}
+			translatedLore = this.translatedLore;
+		}
+
+		List<String> translated = translatedLore.get(language);
+		if (translated == null) {
+			translated = translateLines(pov);
+			translatedLore.put(language, translated);
+		}
+		return translated;
+	}
+
+	private List<String> translateLines(Player pov) {
+		List<String> output = Utils.newArrayList();
+		for (String line : lore) {
+			output.add(ChestCommands.translate(pov, line));
+		}
+		return output;
+	}
+
+	private List<String> buildLore(Player pov) {
+
 		List<String> output = null;
 
 		if (hasLore()) {
@@ -255,16 +457,13 @@ public class Icon {
 					String line = ChestCommands.translate(pov,lore.get(i));
 
 					if (loreLinesWithVariables[i]) {
-						line = VariableManager.setVariables(line, pov);
+						line = setVariables(compiledLore[i], line, pov);
 					}
 					output.add(line);
 				}
 			} else {
 				// Otherwise just copy the lines
-
-				for(String l:lore){
-					output.add(ChestCommands.translate(pov,l));
-				}
+				output.addAll(getTranslatedLore(pov));
 			}
 		}
 
@@ -281,65 +480,156 @@ public class Icon {
 		return output;
 	}
 
-	@SuppressWarnings("deprecation")
 	public ItemStack createItemstack(Player pov) {
 
 		if(pov==null)
 			return null;
 
-		// If the material is not set, display BEDROCK
-		ItemStack itemStack = (material != null) ? new ItemStack(material, amount, dataValue) : new ItemStack(Material.BEDROCK, amount);
-
-		// First try to apply NBT data
-		if (nbtData != null) {
-			try {
-				// Note: this method should not throw any exception. It should log directly to the console
-				Bukkit.getUnsafe().modifyItemStack(itemStack, nbtData);
-			} catch (Throwable t) {
-				this.nbtData = null;
-				ChestCommands.getInstance().getLogger().log(Level.WARNING, "Could not apply NBT-DATA to an item.", t);
-			}
+		ItemStack template = getTemplate();
+		if (template != null) {
+			return template.clone();
 		}
 
-		// Then apply data from config nodes, overwriting NBT data if there are confliting values
-		ItemMeta itemMeta = itemStack.getItemMeta();
-
+		return buildItemstack(pov, hasName() ? calculateName(pov) : null, hasLore() ? calculateLore(pov) : null);
+	}
 
-		if (hasName()) {
-			itemMeta.setDisplayName(calculateName(pov));
+	/**
+	 * Creates the item as it should be displayed inside a menu, with the attributes hidden.
+	 */
+	public ItemStack createDisplayItemstack(Player pov) {
+		ItemStack template = getTemplate();
+		if (template != null) {
+			return template.clone();
 		}
-		if (hasLore()) {
-			itemMeta.setLore(calculateLore(pov));
+
+		// Attributes are already hidden in the base item
+		return createItemstack(pov);
+	}
+
+	/**
+	 * Same as {@link #createDisplayItemstack(Player)}, with the name and the lore already calculated for the player.
+	 */
+	protected ItemStack createDisplayItemstack(Player pov, String name, List<String> lore) {
+		return buildItemstack(pov, name, lore);
+	}
+
+	/**
+	 * Prepares the item of static icons once, so that opening a menu only needs to clone it.
+	 * It is called when menus are loaded, and again lazily after the icon is modified.
+	 */
+	public void compileTemplate() {
+		if (isStatic()) {
+			template = buildItemstack(null, hasName() ? calculateName(null) : null, hasLore() ? calculateLore(null) : null);
+		} else {
+			template = null;
 		}
+		templateCompiled = true;
+	}
 
-		if (color != null && itemMeta instanceof LeatherArmorMeta) {
-			((LeatherArmorMeta) itemMeta).setColor(color);
+	private ItemStack getTemplate() {
+		if (!templateCompiled) {
+			compileTemplate();
 		}
+		return template;
+	}
+
+	private void invalidateTemplate() {
+		template = null;
+		templateCompiled = false;
+		prototype = null;
+		templateVersion++;
+	}
+
+	/**
+	 * Returns a number that changes every time the icon is modified, used to know
+	 * when the items displayed by the menus must be created again.
+	 */
+	public int getTemplateVersion() {
+		return templateVersion;
+	}
 
-		if (skullOwner != null && itemMeta instanceof SkullMeta) {
-			String skullOwner = this.skullOwner;
-			if(skullOwnerHasVariables) {
-				skullOwner = VariableManager.setVariables(skullOwner, pov);
+	/**
+	 * Returns the parts of the item that are the same for every render: material, amount, data value, NBT data,
+	 * color, banner, enchantments and hidden attributes. They are applied only the first time.
+	 */
+	@SuppressWarnings("deprecation")
+	private ItemPrototype getPrototype() {
+		ItemPrototype prototype = this.prototype;
+
+		if (prototype == null) {
+			// If the material is not set, display BEDROCK
+			ItemStack itemStack = (material != null) ? new ItemStack(material, amount, dataValue) : new ItemStack(Material.BEDROCK, amount);
+
+			// First try to apply NBT data
+			if (nbtData != null) {
+				try {
+					// Note: this method should not throw any exception. It should log directly to the console
+					Bukkit.getUnsafe().modifyItemStack(itemStack, nbtData);
+				} catch (Throwable t) {
+					this.nbtData = null;
+					invalidateTemplate();
+					ChestCommands.getInstance().getLogger().log(Level.WARNING, "Could not apply NBT-DATA to an item.", t);
+				}
 			}
-			((SkullMeta) itemMeta).setOwner(skullOwner);
-		}
 
-		if (bannerColor != null && itemMeta instanceof BannerMeta) {
-			BannerMeta bannerMeta = (BannerMeta) itemMeta;
-			bannerMeta.setBaseColor(bannerColor);
-			if (bannerPatterns != null) {
-				((BannerMeta) itemMeta).setPatterns(bannerPatterns);
+			// Then apply data from config nodes, overwriting NBT data if there are confliting values
+			ItemMeta itemMeta = itemStack.getItemMeta();
+
+			if (color != null && itemMeta instanceof LeatherArmorMeta) {
+				((LeatherArmorMeta) itemMeta).setColor(color);
 			}
-		}
 
-		itemStack.setItemMeta(itemMeta);
+			if (bannerColor != null && itemMeta instanceof BannerMeta) {
+				BannerMeta bannerMeta = (BannerMeta) itemMeta;
+				bannerMeta.setBaseColor(bannerColor);
+				if (bannerPatterns != null) {
+					((BannerMeta) itemMeta).setPatterns(bannerPatterns);
+				}
+			}
 
-		if (enchantments.size() > 0) {
-			for (Entry<Enchantment, Integer> entry : enchantments.entrySet()) {
-				itemStack.addUnsafeEnchantment(entry.getKey(), entry.getValue());
+			itemStack.setItemMeta(itemMeta);
+
+			if (enchantments.size() > 0) {
+				for (Entry<Enchantment, Integer> entry : enchantments.entrySet()) {
+					itemStack.addUnsafeEnchantment(entry.getKey(), entry.getValue());
+				}
 			}
+
+			itemStack = ItemUtils.hideAttributes(itemStack);
+			prototype = new ItemPrototype(itemStack);
+			this.prototype = prototype;
+		}
+
+		return prototype;
+	}
+
+	private ItemStack buildItemstack(Player pov, String name, List<String> lore) {
+
+		ItemPrototype prototype = getPrototype();
+		boolean applySkullOwner = skullOwner != null && prototype.meta instanceof SkullMeta;
+
+		if (name == null && lore == null && !applySkullOwner) {
+			// Nothing changes from the prototype
+			return prototype.item.clone();
+		}
+
+		// Only the name, the lore and the skull owner are applied to a copy of the prepared meta
+		ItemMeta itemMeta = prototype.meta.clone();
+
+		if (name != null) {
+			itemMeta.setDisplayName(name);
+		}
+		if (lore != null) {
+			itemMeta.setLore(lore);
 		}
 
+		if (applySkullOwner) {
+			// The texture is resolved in another thread, the default head is displayed until then
+			ChestCommands.getSkullCache().applyTexture((SkullMeta) itemMeta, calculateSkullOwner(pov));
+		}
+
+		ItemStack itemStack = prototype.createEmptyItemstack();
+		itemStack.setItemMeta(itemMeta);
 		return itemStack;
 	}
 
@@ -350,4 +640,20 @@ public class Icon {
 
 		return closeOnClick;
 	}
+
+	private static class ItemPrototype {
+
+		private final ItemStack item;
+		private final ItemMeta meta;
+
+		private ItemPrototype(ItemStack item) {
+			this.item = item;
+			this.meta = item.getItemMeta();
+		}
+
+		@SuppressWarnings("deprecation")
+		private ItemStack createEmptyItemstack() {
+			return new ItemStack(item.getType(), item.getAmount(), item.getDurability());
+		}
+	}
 }
@@ -16,12 +16,13 @@ package com.gmail.filoghost.chestcommands.api;
 
 import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.internal.MenuInventoryHolder;
-import com.gmail.filoghost.chestcommands.util.ItemUtils;
+import com.gmail.filoghost.chestcommands.util.InventoryUtils;
 import com.gmail.filoghost.chestcommands.util.Utils;
 import com.gmail.filoghost.chestcommands.util.Validate;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
 
 import java.util.Arrays;
 
@@ -88,15 +89,19 @@ public class IconMenu {
 
 	public void open(Player player) {
 		Validate.notNull(player, "Player cannot be null");
+		ChestCommands.getTranslationCache().checkLanguage(player);
 
 		Inventory inventory = Bukkit.createInventory(new MenuInventoryHolder(this), icons.length, ChestCommands.translate(player,title));
 
+		ItemStack[] contents = InventoryUtils.getContentsBuffer(icons.length);
+
 		for (int i = 0; i < icons.length; i++) {
 			if (icons[i] != null) {
-				inventory.setItem(i, ItemUtils.hideAttributes(icons[i].createItemstack(player)));
+				contents[i] = icons[i].createDisplayItemstack(player);
 			}
 		}
 
+		InventoryUtils.setContents(inventory, contents);
 		player.openInventory(inventory);
 	}
 
@@ -14,6 +14,8 @@
  */
 package com.gmail.filoghost.chestcommands.bridge;
 
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.internal.Variable;
 import com.gmail.filoghost.chestcommands.util.MenuUtils;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
@@ -21,10 +23,20 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class EconomyBridge {
 
 	private static Economy economy;
 
+	// Player -> last known balance, to avoid querying the economy plugin for every rendered line
+	private static final Map<UUID, CachedBalance> balances = new ConcurrentHashMap<UUID, CachedBalance>();
+	private static final Set<UUID> pendingPrefetches = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
 	public static boolean setupEconomy() {
 		if (Bukkit.getPluginManager().getPlugin("Vault") == null) {
 			return false;
@@ -46,16 +58,156 @@ public class EconomyBridge {
 		return economy;
 	}
 
+	/**
+	 * Returns the balance of the player, which may be cached for up to "balance-cache-millis".
+	 * Use {@link #getFreshMoney(Player)} before an operation that depends on the exact value.
+	 */
 	public static double getMoney(Player player) {
 		if (!hasValidEconomy()) throw new IllegalStateException("Economy plugin was not found!");
-		return economy.getBalance(player.getName(), player.getWorld().getName());
+
+		String world = player.getWorld().getName();
+		CachedBalance cached = balances.get(player.getUniqueId());
+
+		if (cached != null && cached.world.equals(world)) {
+			if (!cached.isExpired()) {
+				return cached.balance;
+			}
+			if (isPrefetchEnabled()) {
+				// Display the old value until the new one arrives
+				prefetchMoney(player);
+				return cached.balance;
+			}
+		}
+
+		return getFreshMoney(player);
+	}
+
+	/**
+	 * Returns the cached balance without ever querying the economy plugin on the calling thread, or null if it's not known yet.
+	 * A missing or expired balance is read in another thread, then the icons displaying {money} are refreshed.
+	 * Can only be used if {@link #isPrefetchEnabled()}.
+	 */
+	public static Double getCachedMoney(Player player) {
+		CachedBalance cached = balances.get(player.getUniqueId());
+
+		if (cached == null || cached.isExpired() || !cached.world.equals(player.getWorld().getName())) {
+			prefetchMoney(player);
+		}
+
+		if (cached != null && cached.world.equals(player.getWorld().getName())) {
+			return cached.balance;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the cached balance if it's still valid, or null. Never queries the economy plugin.
+	 */
+	public static Double getValidCachedMoney(Player player) {
+		CachedBalance cached = balances.get(player.getUniqueId());
+
+		if (cached != null && !cached.isExpired() && cached.world.equals(player.getWorld().getName())) {
+			return cached.balance;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if balances are read in another thread: "async-balance-prefetch" is enabled and balances are cached.
+	 */
+	public static boolean isPrefetchEnabled() {
+		return ChestCommands.getSettings().async_balance_prefetch && ChestCommands.getSettings().balance_cache_millis > 0;
+	}
+
+	/**
+	 * Always queries the economy plugin, and updates the cache.
+	 */
+	public static double getFreshMoney(Player player) {
+		if (!hasValidEconomy()) throw new IllegalStateException("Economy plugin was not found!");
+
+		String world = player.getWorld().getName();
+		double balance = economy.getBalance(player.getName(), world);
+		balances.put(player.getUniqueId(), new CachedBalance(world, balance));
+		return balance;
+	}
+
+	/**
+	 * Reads the balance in another thread if the cached one is expired, then refreshes the icons displaying {money} if it changed.
+	 * Does nothing unless "async-balance-prefetch" is enabled, since not all economy plugins are thread safe,
+	 * or if "balance-cache-millis" is 0, since the balance would never be cached.
+	 */
+	public static void prefetchMoney(final Player player) {
+		if (!hasValidEconomy() || !isPrefetchEnabled()) {
+			return;
+		}
+
+		CachedBalance cached = balances.get(player.getUniqueId());
+		if (cached != null && !cached.isExpired() && cached.world.equals(player.getWorld().getName())) {
+			return;
+		}
+
+		if (!pendingPrefetches.add(player.getUniqueId())) {
+			return;
+		}
+
+		final String world = player.getWorld().getName();
+		Bukkit.getScheduler().runTaskAsynchronously(ChestCommands.getInstance(), new Runnable() {
+
+			@Override
+			public void run() {
+				final double balance;
+				try {
+					balance = economy.getBalance(player.getName(), world);
+				} catch (RuntimeException e) {
+					pendingPrefetches.remove(player.getUniqueId());
+					throw e;
+				}
+
+				// Stored on the main thread, where the balance is also discarded when the player quits
+				Bukkit.getScheduler().scheduleSyncDelayedTask(ChestCommands.getInstance(), new Runnable() {
+
+					@Override
+					public void run() {
+						pendingPrefetches.remove(player.getUniqueId());
+						if (!player.isOnline()) {
+							return;
+						}
+
+						CachedBalance previous = balances.put(player.getUniqueId(), new CachedBalance(world, balance));
+						if (previous != null && previous.world.equals(world) && previous.balance == balance) {
+							// The displayed value is still correct
+							return;
+						}
+
+						MenuUtils.refreshMenu(player, Variable.MONEY);
+					}
+				});
+			}
+		});
 	}
 
+	/**
+	 * Discards the cached balance, should be called when it changes or the player quits.
+	 */
+	public static void invalidateMoney(Player player) {
+		balances.remove(player.getUniqueId());
+	}
+
+	/**
+	 * Checks the cached balance, see {@link #getMoney(Player)}.
+	 */
 	public static boolean hasMoney(Player player, double minimum) {
+		return hasMoney(player, minimum, false);
+	}
+
+	/**
+	 * @param fresh true to ignore the cached balance, for example right before a withdrawal
+	 */
+	public static boolean hasMoney(Player player, double minimum, boolean fresh) {
 		if (!hasValidEconomy()) throw new IllegalStateException("Economy plugin was not found!");
 		if (minimum < 0.0) throw new IllegalArgumentException("Invalid amount of money: " + minimum);
 
-		double balance = economy.getBalance(player.getName(), player.getWorld().getName());
+		double balance = fresh ? getFreshMoney(player) : getMoney(player);
 
 		if (balance < minimum) {
 			return false;
@@ -74,11 +226,40 @@ public class EconomyBridge {
 		EconomyResponse response = economy.withdrawPlayer(player.getName(), player.getWorld().getName(), amount);
 		boolean result = response.transactionSuccess();
 
-		MenuUtils.refreshMenu(player);
+		invalidateMoney(player);
+		MenuUtils.refreshMenu(player, Variable.MONEY);
 
 		return result;
 	}
 
+	/**
+	 * Withdraws money checking the real balance right before, without refreshing the menus.
+	 * It can be called from another thread if "async-transactions" is enabled, the caller should
+	 * invalidate the cached balance and refresh the menus on the main thread afterwards.
+	 *
+	 * @return true if the player had enough money and the operation was successful.
+	 */
+	public static boolean withdrawMoney(String playerName, String world, double amount) {
+		if (!hasValidEconomy()) throw new IllegalStateException("Economy plugin was not found!");
+		if (amount < 0.0) throw new IllegalArgumentException("Invalid amount of money: " + amount);
+
+		if (economy.getBalance(playerName, world) < amount) {
+			return false;
+		}
+
+		return economy.withdrawPlayer(playerName, world, amount).transactionSuccess();
+	}
+
+	/**
+	 * Deposits money by name, also when the player is offline. Does not invalidate the cached balance.
+	 */
+	public static boolean depositMoney(String playerName, String world, double amount) {
+		if (!hasValidEconomy()) throw new IllegalStateException("Economy plugin was not found!");
+		if (amount < 0.0) throw new IllegalArgumentException("Invalid amount of money: " + amount);
+
+		return economy.depositPlayer(playerName, world, amount).transactionSuccess();
+	}
+
 	public static boolean giveMoney(Player player, double amount) {
 		if (!hasValidEconomy()) throw new IllegalStateException("Economy plugin was not found!");
 		if (amount < 0.0) throw new IllegalArgumentException("Invalid amount of money: " + amount);
@@ -86,7 +267,8 @@ public class EconomyBridge {
 		EconomyResponse response = economy.depositPlayer(player.getName(), player.getWorld().getName(), amount);
 		boolean result = response.transactionSuccess();
 
-		MenuUtils.refreshMenu(player);
+		invalidateMoney(player);
+		MenuUtils.refreshMenu(player, Variable.MONEY);
 
 		return result;
 	}
@@ -98,4 +280,22 @@ public class EconomyBridge {
 			return Double.toString(amount);
 		}
 	}
+
+
+	private static class CachedBalance {
+
+		private final String world;
+		private final double balance;
+		private final long time;
+
+		private CachedBalance(String world, double balance) {
+			this.world = world;
+			this.balance = balance;
+			this.time = System.currentTimeMillis();
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() - time >= ChestCommands.getSettings().balance_cache_millis;
+		}
+	}
 }
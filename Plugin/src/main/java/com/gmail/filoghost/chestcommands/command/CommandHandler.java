@@ -19,6 +19,7 @@ import com.gmail.filoghost.chestcommands.Permissions;
 import com.gmail.filoghost.chestcommands.command.framework.CommandFramework;
 import com.gmail.filoghost.chestcommands.command.framework.CommandValidate;
 import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
+import com.gmail.filoghost.chestcommands.internal.PermissionCache;
 import com.gmail.filoghost.chestcommands.task.ErrorLoggerTask;
 import com.gmail.filoghost.chestcommands.util.ErrorLogger;
 import org.bukkit.Bukkit;
@@ -51,6 +52,7 @@ public class CommandHandler extends CommandFramework {
 			sender.sendMessage(ChatColor.WHITE + "/" + label + " reload" + ChatColor.GRAY + " - Reloads the plugin.");
 			sender.sendMessage(ChatColor.WHITE + "/" + label + " list" + ChatColor.GRAY + " - Lists the loaded menus.");
 			sender.sendMessage(ChatColor.WHITE + "/" + label + " open <menu> [player]" + ChatColor.GRAY + " - Opens a menu for a player.");
+			sender.sendMessage(ChatColor.WHITE + "/" + label + " stats" + ChatColor.GRAY + " - Shows statistics about the caches.");
 			return;
 		}
 
@@ -133,6 +135,24 @@ public class CommandHandler extends CommandFramework {
 			return;
 		}
 
+		if (args[0].equalsIgnoreCase("stats")) {
+			CommandValidate.isTrue(sender.hasPermission(Permissions.COMMAND_BASE + "stats"), "You don't have permission.");
+
+			PermissionCache permissionCache = ChestCommands.getPermissionCache();
+			long checks = permissionCache.getHits() + permissionCache.getMisses();
+			String hitRate = checks > 0 ? (permissionCache.getHits() * 100 / checks) + "%" : "-";
+
+			sender.sendMessage(ChestCommands.CHAT_PREFIX + " Statistics:");
+			sender.sendMessage(ChatColor.GREEN + "Permission cache: " + ChatColor.GRAY + permissionCache.getHits() + " hits, " + permissionCache.getMisses() + " misses (" + hitRate + " hit rate), " + permissionCache.getSize() + " players");
+			sender.sendMessage(ChatColor.GREEN + "Pending clicks: " + ChatColor.GRAY + ChestCommands.getClickDispatcher().getPendingClicks());
+
+			if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+				permissionCache.resetCounters();
+				sender.sendMessage(ChestCommands.CHAT_PREFIX + "Statistics reset.");
+			}
+			return;
+		}
+
 		sender.sendMessage(ChatColor.RED + "Unknown sub-command \"" + args[0] + "\".");
 	}
 
@@ -0,0 +1,62 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.command;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * A command of a menu, registered in the command map of the server.
+ */
+public class MenuCommand extends Command {
+
+	private final ExtendedIconMenu menu;
+
+	public MenuCommand(String name, ExtendedIconMenu menu) {
+		super(name);
+		this.menu = menu;
+		setDescription("Opens the menu " + menu.getFileName() + ".");
+	}
+
+	public ExtendedIconMenu getMenu() {
+		return menu;
+	}
+
+	@Override
+	public boolean execute(CommandSender sender, String label, String[] args) {
+		if (!(sender instanceof Player)) {
+			sender.sendMessage(ChatColor.RED + "Only players can open menus.");
+			return true;
+		}
+
+		// Same rule as the fallback commands in CommandListener
+		if (ChestCommands.getSettings().use_only_commands_without_args && args.length > 0) {
+			return false;
+		}
+
+		Player player = (Player) sender;
+		if (player.hasPermission(menu.getPermission())) {
+			menu.open(player);
+		} else {
+			menu.sendNoPermissionMessage(player);
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.command;
+
+import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
+import com.gmail.filoghost.chestcommands.util.CaseInsensitiveMap;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+
+/**
+ * Registers the commands of the menus in the command map of the server, so that the other commands don't go through ChestCommands.
+ *
+ * When the command map can't be accessed, or a command already belongs to another plugin,
+ * the command is left to the {@link com.gmail.filoghost.chestcommands.listener.CommandListener}.
+ */
+public class MenuCommandRegistry {
+
+	private final Plugin plugin;
+	private final List<MenuCommand> registered = Utils.newArrayList();
+	private final Map<String, ExtendedIconMenu> fallbackCommands = CaseInsensitiveMap.create();
+
+	private boolean reflectionLoaded;
+	private CommandMap commandMap;
+	private Map<String, Command> knownCommands;
+	private Method syncCommandsMethod;
+
+	public MenuCommandRegistry(Plugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Replaces the registered commands with the new ones.
+	 */
+	public void registerAll(Map<String, ExtendedIconMenu> commands) {
+		unregisterAll();
+
+		if (!loadReflection()) {
+			for (Entry<String, ExtendedIconMenu> entry : commands.entrySet()) {
+				fallbackCommands.put(entry.getKey(), entry.getValue());
+			}
+			return;
+		}
+
+		String fallbackPrefix = plugin.getName().toLowerCase();
+
+		for (Entry<String, ExtendedIconMenu> entry : commands.entrySet()) {
+			MenuCommand command = new MenuCommand(entry.getKey(), entry.getValue());
+
+			// Returns false if the label belongs to another command, in that case only "chestcommands:<label>" is registered
+			if (!commandMap.register(fallbackPrefix, command)) {
+				fallbackCommands.put(entry.getKey(), entry.getValue());
+			}
+			registered.add(command);
+		}
+
+		syncCommands();
+	}
+
+	public void unregisterAll() {
+		fallbackCommands.clear();
+
+		if (registered.isEmpty()) {
+			return;
+		}
+
+		Iterator<Command> iter = knownCommands.values().iterator();
+		while (iter.hasNext()) {
+			Command command = iter.next();
+			if (command instanceof MenuCommand && registered.contains(command)) {
+				iter.remove();
+			}
+		}
+
+		for (MenuCommand command : registered) {
+			command.unregister(commandMap);
+		}
+		registered.clear();
+	}
+
+	/**
+	 * Returns the menu of a command that couldn't be registered, or null.
+	 */
+	public ExtendedIconMenu getFallbackMenu(String command) {
+		return fallbackCommands.get(command);
+	}
+
+	public boolean hasFallbackCommands() {
+		return !fallbackCommands.isEmpty();
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean loadReflection() {
+		if (reflectionLoaded) {
+			return knownCommands != null;
+		}
+		reflectionLoaded = true;
+
+		try {
+			Method getCommandMap = Bukkit.getServer().getClass().getMethod("getCommandMap");
+			CommandMap commandMap = (CommandMap) getCommandMap.invoke(Bukkit.getServer());
+
+			Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
+			knownCommandsField.setAccessible(true);
+
+			this.knownCommands = (Map<String, Command>) knownCommandsField.get(commandMap);
+			this.commandMap = commandMap;
+		} catch (Throwable t) {
+			plugin.getLogger().log(Level.WARNING, "Could not access the command map, menu commands will be handled with a listener.", t);
+			return false;
+		}
+
+		try {
+			// Since 1.13 the players must receive the updated list of commands
+			syncCommandsMethod = Bukkit.getServer().getClass().getMethod("syncCommands");
+		} catch (NoSuchMethodException e) {
+			// Older version
+		}
+
+		return true;
+	}
+
+	private void syncCommands() {
+		if (syncCommandsMethod == null) {
+			return;
+		}
+
+		try {
+			syncCommandsMethod.invoke(Bukkit.getServer());
+		} catch (Throwable t) {
+			plugin.getLogger().log(Level.WARNING, "Could not send the updated commands to the players.", t);
+			syncCommandsMethod = null;
+		}
+	}
+
+}
@@ -24,6 +24,8 @@ public class Lang extends SpecialConfig {
 	public String no_required_item = "&cYou must have &e{amount}x {material} &c(data value: {datavalue}) for this.";
 	public String no_money = "&cYou need {money}$ for this.";
 	public String no_exp = "&cYou need {levels} XP levels for this.";
+	public String loading_balance = "...";
+	public String purchase_in_progress = "&cPlease wait, your previous purchase is still being processed.";
 	public String menu_not_found = "&cMenu not found! Please inform the staff.";
 	public String open_menu = "&aOpening the menu \"{menu}\".";
 	public String open_menu_others = "&aOpening the menu \"{menu}\" to {player}.";
@@ -26,6 +26,17 @@ public class Settings extends SpecialConfig {
 	public boolean update_notifications = true;
 	public int anti_click_spam_delay = 200;
 	public boolean use_only_commands_without_args = true;
+	public int refresh_budget_microseconds = 2000;
+	public String translation_language_key = ""; // A key translated to the language code, required to cache translations
+	public boolean reuse_inventory_when_navigating = false;
+	public int skull_cache_hours = 72;
+	public int refresh_threads = 0;
+	public String async_safe_placeholders = "";
+	public int balance_cache_millis = 2000;
+	public boolean async_balance_prefetch = false;
+	public boolean async_transactions = false;
+	public int permission_cache_seconds = 10;
+	public int max_clicks_per_tick = 0;
 
 	public Settings(PluginConfig config) {
 		super(config);
@@ -29,7 +29,7 @@ public class BoundItem {
 
 	public BoundItem(ExtendedIconMenu menu, Material material, ClickType clickType) {
 		Validate.notNull(material, "Material cannot be null");
-		Validate.notNull(material, "ClickType cannot be null");
+		Validate.notNull(clickType, "ClickType cannot be null");
 		Validate.isTrue(material != Material.AIR, "Material cannot be AIR");
 
 		this.menu = menu;
@@ -46,6 +46,14 @@ public class BoundItem {
 		return menu;
 	}
 
+	public Material getMaterial() {
+		return material;
+	}
+
+	public ClickType getClickType() {
+		return clickType;
+	}
+
 	public boolean isValidTrigger(ItemStack item, Action action) {
 		if (item == null) {
 			return false;
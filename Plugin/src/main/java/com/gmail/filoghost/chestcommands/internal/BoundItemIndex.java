@@ -0,0 +1,86 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.util.ClickType;
+import org.bukkit.Material;
+import org.bukkit.event.block.Action;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Bound items grouped by material, so that an interaction with an item that doesn't open any menu
+ * costs a single lookup. Each material also stores the click types of its bound items as a bitmask.
+ */
+public class BoundItemIndex {
+
+	private static final BoundItem[] EMPTY = new BoundItem[0];
+
+	private final Map<Material, Entry> entries = new EnumMap<Material, Entry>(Material.class);
+	private int size;
+
+	public void add(BoundItem boundItem) {
+		Entry entry = entries.get(boundItem.getMaterial());
+		if (entry == null) {
+			entry = new Entry();
+			entries.put(boundItem.getMaterial(), entry);
+		}
+
+		// Bound items are only added while loading, copying the array keeps lookups simple
+		BoundItem[] items = new BoundItem[entry.items.length + 1];
+		System.arraycopy(entry.items, 0, items, 0, entry.items.length);
+		items[entry.items.length] = boundItem;
+
+		entry.items = items;
+		entry.clickMask |= boundItem.getClickType().getMask();
+		size++;
+	}
+
+	/**
+	 * Returns the bound items that may be triggered by the item and the action, or null if there are none.
+	 * The data value is not checked here, use {@link BoundItem#isValidTrigger(ItemStack, Action)}.
+	 */
+	public BoundItem[] getCandidates(ItemStack item, Action action) {
+		if (item == null) {
+			return null;
+		}
+
+		Entry entry = entries.get(item.getType());
+		if (entry == null || (entry.clickMask & ClickType.getMask(action)) == 0) {
+			return null;
+		}
+
+		return entry.items;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+
+	private static class Entry {
+
+		private BoundItem[] items = EMPTY;
+		private int clickMask;
+	}
+
+}
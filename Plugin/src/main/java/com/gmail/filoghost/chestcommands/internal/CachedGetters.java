@@ -33,4 +33,8 @@ public class CachedGetters {
 		return onlinePlayers;
 	}
 
+	public static void invalidateOnlinePlayers() {
+		lastOnlinePlayersRefresh = 0;
+	}
+
 }
@@ -44,7 +44,11 @@ public class CommandsClickHandler implements ClickHandler {
 	public boolean onClick(Player player) {
 		if (commands != null && commands.size() > 0) {
 			for (IconCommand command : commands) {
-				command.execute(player);
+				if (command instanceof OpenIconCommand) {
+					((OpenIconCommand) command).executeAfterClick(player);
+				} else {
+					command.execute(player);
+				}
 			}
 		}
 
@@ -0,0 +1,290 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.bridge.PlaceholderAPIBridge;
+import com.gmail.filoghost.chestcommands.config.Settings;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.entity.Player;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A string split once into literal parts, built-in variables and PlaceholderAPI placeholders,
+ * so that it can be rendered for a player in a single pass without intermediate strings.
+ */
+public class CompiledText {
+
+	private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(64);
+		}
+	};
+
+	private final String source;
+
+	// Each segment is either a String (literal), a Variable or a Placeholder
+	private final Object[] segments;
+	private final boolean hasVariables;
+
+	// What the rendered string depends on
+	private final Set<Variable> variables;
+	private final Set<String> placeholderIdentifiers;
+	private final boolean global;
+	private final boolean asyncSafe;
+
+	// The last rendered value of global strings, shared between all the players
+	private volatile RenderCycle.Cached<String> shared;
+
+	private CompiledText(String source, Object[] segments, boolean hasVariables) {
+		this.source = source;
+		this.segments = segments;
+		this.hasVariables = hasVariables;
+
+		this.variables = EnumSet.noneOf(Variable.class);
+		this.placeholderIdentifiers = Utils.newHashSet();
+		for (Object segment : segments) {
+			if (segment instanceof Variable) {
+				variables.add((Variable) segment);
+			} else if (segment instanceof Placeholder) {
+				placeholderIdentifiers.add(((Placeholder) segment).identifier);
+			}
+		}
+
+		boolean global = placeholderIdentifiers.isEmpty();
+		for (Variable variable : variables) {
+			if (!variable.isGlobal()) {
+				global = false;
+			}
+		}
+		this.global = global;
+
+		boolean asyncSafe = true;
+		for (Variable variable : variables) {
+			if (!variable.isAsyncSafe()) {
+				asyncSafe = false;
+			}
+		}
+		for (String identifier : placeholderIdentifiers) {
+			if (!isAsyncSafePlaceholder(identifier)) {
+				asyncSafe = false;
+			}
+		}
+		this.asyncSafe = asyncSafe;
+	}
+
+	private static boolean isAsyncSafePlaceholder(String identifier) {
+		Settings settings = ChestCommands.getSettings();
+		if (settings == null) {
+			return false;
+		}
+
+		for (String safeIdentifier : settings.async_safe_placeholders.split(",")) {
+			if (safeIdentifier.trim().equalsIgnoreCase(identifier)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static CompiledText compile(String source) {
+		return compile(source, PlaceholderAPIBridge.hasValidPlugin());
+	}
+
+	/**
+	 * @param placeholders if PlaceholderAPI placeholders should be parsed
+	 */
+	static CompiledText compile(String source, boolean placeholders) {
+		if (source == null) {
+			return null;
+		}
+
+		List<Object> segments = Utils.newArrayList();
+		boolean hasVariables = false;
+		int literalStart = 0;
+		int i = 0;
+
+		while (i < source.length()) {
+			char c = source.charAt(i);
+			Object match = null;
+			int end = i;
+
+			if (c == '{') {
+				for (Variable variable : Variable.values()) {
+					if (source.startsWith(variable.getText(), i)) {
+						match = variable;
+						end = i + variable.getText().length();
+						break;
+					}
+				}
+
+			} else if (c == '%' && placeholders) {
+				int closing = findPlaceholderEnd(source, i);
+				if (closing > 0) {
+					String placeholder = source.substring(i + 1, closing);
+					int separator = placeholder.indexOf('_');
+					String identifier = separator > 0 ? placeholder.substring(0, separator) : placeholder;
+
+					match = new Placeholder(source.substring(i, closing + 1), identifier.toLowerCase());
+					end = closing + 1;
+				}
+				// Otherwise only this % is skipped, the next one may open a valid placeholder
+			}
+
+			if (match != null) {
+				if (literalStart < i) {
+					segments.add(source.substring(literalStart, i));
+				}
+				segments.add(match);
+				hasVariables = true;
+				literalStart = end;
+				i = end;
+			} else {
+				i = end > i ? end : i + 1;
+			}
+		}
+
+		if (literalStart < source.length()) {
+			segments.add(source.substring(literalStart));
+		}
+
+		return new CompiledText(source, segments.toArray(), hasVariables);
+	}
+
+	/**
+	 * Returns the index of the % that closes the placeholder starting at the given index, or -1 if there is none.
+	 * Like PlaceholderAPI, a placeholder is any non-empty text between two % characters (%[^%]+%).
+	 * The identifier (the part before the first _) cannot contain spaces, so that a single % in a sentence,
+	 * as in "50% off %vault_eco_balance%", doesn't hide the placeholder after it.
+	 */
+	static int findPlaceholderEnd(String source, int start) {
+		if (start >= source.length() || source.charAt(start) != '%') {
+			return -1;
+		}
+
+		boolean inIdentifier = true;
+		for (int i = start + 1; i < source.length(); i++) {
+			char c = source.charAt(i);
+			if (c == '%') {
+				return i > start + 1 ? i : -1;
+			} else if (c == '_') {
+				inIdentifier = false;
+			} else if (inIdentifier && Character.isWhitespace(c)) {
+				return -1;
+			}
+		}
+
+		return -1;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public boolean hasVariables() {
+		return hasVariables;
+	}
+
+	public boolean dependsOn(Variable variable) {
+		return variables.contains(variable);
+	}
+
+	/**
+	 * @param identifier the PlaceholderAPI identifier, for example "vault" for %vault_eco_balance%
+	 */
+	public boolean dependsOnPlaceholder(String identifier) {
+		return placeholderIdentifiers.contains(identifier.toLowerCase());
+	}
+
+	/**
+	 * Returns true if the rendered string is the same for every player, for example with only {online}.
+	 */
+	public boolean isGlobal() {
+		return global;
+	}
+
+	/**
+	 * Returns true if the string can be rendered outside the main thread: only thread-safe variables
+	 * and placeholders listed in "async-safe-placeholders".
+	 */
+	public boolean isAsyncSafe() {
+		return asyncSafe;
+	}
+
+	public Set<Variable> getVariables() {
+		return variables;
+	}
+
+	public Set<String> getPlaceholderIdentifiers() {
+		return placeholderIdentifiers;
+	}
+
+	public String render(Player player) {
+		if (!hasVariables) {
+			return source;
+		}
+
+		if (global) {
+			// Calculated once per refresh cycle for all the viewers
+			RenderCycle.Cached<String> shared = this.shared;
+			if (shared == null || !shared.isValid()) {
+				shared = new RenderCycle.Cached<String>(renderSegments(player));
+				this.shared = shared;
+			}
+			return shared.getValue();
+		}
+
+		return renderSegments(player);
+	}
+
+	private String renderSegments(Player player) {
+		StringBuilder builder = BUILDER.get();
+		builder.setLength(0);
+
+		for (Object segment : segments) {
+			if (segment instanceof String) {
+				builder.append((String) segment);
+			} else if (segment instanceof Variable) {
+				builder.append(((Variable) segment).getReplacement(player));
+			} else {
+				builder.append(((Placeholder) segment).getReplacement(player));
+			}
+		}
+
+		return builder.toString();
+	}
+
+
+	private static class Placeholder {
+
+		private final String text;
+		private final String identifier;
+
+		private Placeholder(String text, String identifier) {
+			this.text = text;
+			this.identifier = identifier;
+		}
+
+		private String getReplacement(Player player) {
+			return PlaceholderAPIBridge.setPlaceholders(text, player);
+		}
+
+	}
+
+}
@@ -16,19 +16,24 @@ package com.gmail.filoghost.chestcommands.internal;
 
 import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.Permissions;
+import com.gmail.filoghost.chestcommands.api.Icon;
 import com.gmail.filoghost.chestcommands.api.IconMenu;
+import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
 import com.gmail.filoghost.chestcommands.internal.icon.ExtendedIcon;
 import com.gmail.filoghost.chestcommands.internal.icon.IconCommand;
-import com.gmail.filoghost.chestcommands.util.ItemUtils;
+import com.gmail.filoghost.chestcommands.util.InventoryUtils;
+import com.gmail.filoghost.chestcommands.util.Utils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.List;
+import java.util.Map;
 
 public class ExtendedIconMenu extends IconMenu {
 
@@ -37,11 +42,30 @@ public class ExtendedIconMenu extends IconMenu {
 	private List<IconCommand> openActions;
 
 	private int refreshTicks;
+	private int clickCooldown = -1;
+
+	// Language -> items of the icons without variables, ready to be displayed
+	private final Map<String, ItemStack[]> prerenderedContents;
+	private int prerenderedGeneration;
+	private int[] prerenderedVersions;
 
 	public ExtendedIconMenu(String title, int rows, String fileName) {
 		super(title, rows);
 		this.fileName = fileName;
 		this.permission = Permissions.OPEN_MENU_BASE + fileName;
+		this.prerenderedContents = Utils.newHashMap();
+	}
+
+	@Override
+	public void setIcon(int x, int y, Icon icon) {
+		super.setIcon(x, y, icon);
+		prerenderedContents.clear();
+	}
+
+	@Override
+	public void setIconRaw(int slot, Icon icon) {
+		super.setIconRaw(slot, icon);
+		prerenderedContents.clear();
 	}
 
 	public List<IconCommand> getOpenActions() {
@@ -68,6 +92,17 @@ public class ExtendedIconMenu extends IconMenu {
 		this.refreshTicks = refreshTicks;
 	}
 
+	/**
+	 * The minimum delay between two clicks in milliseconds, -1 to use the default one.
+	 */
+	public int getClickCooldown() {
+		return clickCooldown;
+	}
+
+	public void setClickCooldown(int clickCooldown) {
+		this.clickCooldown = clickCooldown;
+	}
+
 	@Override
 	public void open(Player player) {
 		try {
@@ -77,52 +112,249 @@ public class ExtendedIconMenu extends IconMenu {
 				}
 			}
 
-			Inventory inventory = Bukkit.createInventory(new MenuInventoryHolder(this), icons.length, ChestCommands.translate(player,title));
+			if (EconomyBridge.hasValidEconomy() && dependsOn(Variable.MONEY)) {
+				// Start reading the balance as soon as possible, the icons are refreshed when it arrives
+				EconomyBridge.prefetchMoney(player);
+			}
+
+			ChestCommands.getTranslationCache().checkLanguage(player);
+
+			String translatedTitle = ChestCommands.translate(player,title);
+			Inventory inventory = getReusableInventory(player, translatedTitle);
+			boolean reused = inventory != null;
+			MenuInventoryHolder holder;
+
+			if (reused) {
+				// The player is only moving to another menu that looks the same from the outside
+				holder = (MenuInventoryHolder) inventory.getHolder();
+				holder.setIconMenu(this);
+			} else {
+				holder = new MenuInventoryHolder(this);
+				inventory = Bukkit.createInventory(holder, icons.length, translatedTitle);
+			}
+
+			MenuSnapshot snapshot = holder.getSnapshot();
+
+			ItemStack[] prerendered = getPrerenderedContents(player);
+			ItemStack[] contents = InventoryUtils.getContentsBuffer(icons.length);
+			if (prerendered != null) {
+				// Only the references are copied, the inventory copies the items by itself
+				System.arraycopy(prerendered, 0, contents, 0, icons.length);
+			}
 
 			for (int i = 0; i < icons.length; i++) {
 				if (icons[i] != null) {
 
-					if (icons[i] instanceof ExtendedIcon && !((ExtendedIcon) icons[i]).canViewIcon(player)) {
-						continue;
+					if (icons[i] instanceof ExtendedIcon) {
+						ExtendedIcon extIcon = (ExtendedIcon) icons[i];
+
+						if (!extIcon.canViewIcon(player)) {
+							contents[i] = null;
+							snapshot.setHidden(i);
+							continue;
+						}
+
+						if (extIcon.hasVariables()) {
+							// Remember what is displayed, the next refresh will compare against it
+							String name = extIcon.calculateName(player);
+							List<String> lore = extIcon.calculateLore(player);
+							contents[i] = extIcon.createDisplayItemstack(player, name, lore);
+							snapshot.setShown(i, name, lore);
+							continue;
+						}
+
+						snapshot.setShown(i, null, null);
 					}
 
-					inventory.setItem(i, ItemUtils.hideAttributes(icons[i].createItemstack(player)));
+					if (prerendered == null || icons[i].hasVariables()) {
+						contents[i] = icons[i].createDisplayItemstack(player);
+					}
 				}
 			}
 
+			InventoryUtils.setContents(inventory, contents);
 
-			player.openInventory(inventory);
+			if (reused) {
+				// No InventoryOpenEvent is called for the same window
+				ChestCommands.getViewerRegistry().addViewer(player, inventory, this);
+			} else {
+				player.openInventory(inventory);
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			player.sendMessage(ChatColor.RED + "An internal error occurred while opening the menu. The staff should check the console for errors.");
 		}
 	}
 
+	/**
+	 * Returns true if the menu would be opened in the inventory that the player is looking at,
+	 * without closing it.
+	 */
+	public boolean canReuseInventory(Player player) {
+		return getReusableInventory(player, ChestCommands.translate(player, title)) != null;
+	}
+
+	/**
+	 * Returns the menu inventory that the player is looking at if it has the same size and title,
+	 * so that it can be filled with the icons of this menu without closing it.
+	 */
+	private Inventory getReusableInventory(Player player, String translatedTitle) {
+		if (!ChestCommands.getSettings().reuse_inventory_when_navigating) {
+			return null;
+		}
+
+		InventoryView view = player.getOpenInventory();
+		if (view == null) {
+			return null;
+		}
+
+		Inventory inventory = view.getTopInventory();
+		if (inventory == null || inventory.getSize() != icons.length || !(inventory.getHolder() instanceof MenuInventoryHolder)) {
+			return null;
+		}
+
+		if (!(((MenuInventoryHolder) inventory.getHolder()).getIconMenu() instanceof ExtendedIconMenu)) {
+			return null;
+		}
+
+		if (translatedTitle == null || !translatedTitle.equals(view.getTitle())) {
+			return null;
+		}
+
+		return inventory;
+	}
+
+	/**
+	 * Returns the items of the icons without variables as seen in the language of the player,
+	 * or null if the player has their own language and they should not be kept.
+	 */
+	private ItemStack[] getPrerenderedContents(Player player) {
+		String language = "";
+
+		if (ChestCommands.hasTranslations()) {
+			TranslationCache translationCache = ChestCommands.getTranslationCache();
+			language = translationCache.getLanguage(player);
+
+			if (!translationCache.isSharedLanguage(language)) {
+				return null;
+			}
+
+			if (prerenderedGeneration != translationCache.getGeneration()) {
+				// The translations changed
+				prerenderedContents.clear();
+				prerenderedGeneration = translationCache.getGeneration();
+			}
+		}
+
+		if (!isPrerenderedUpToDate()) {
+			// An icon has been modified through the API
+			prerenderedContents.clear();
+		}
+
+		ItemStack[] contents = prerenderedContents.get(language);
+
+		if (contents == null) {
+			contents = new ItemStack[icons.length];
+			for (int i = 0; i < icons.length; i++) {
+				if (icons[i] != null && !icons[i].hasVariables()) {
+					contents[i] = icons[i].createDisplayItemstack(player);
+				}
+			}
+			prerenderedContents.put(language, contents);
+		}
+
+		return contents;
+	}
+
+	private boolean isPrerenderedUpToDate() {
+		if (prerenderedVersions == null) {
+			prerenderedVersions = new int[icons.length];
+		}
+
+		boolean upToDate = true;
+		for (int i = 0; i < icons.length; i++) {
+			int version = icons[i] != null ? icons[i].getTemplateVersion() : 0;
+			if (prerenderedVersions[i] != version) {
+				prerenderedVersions[i] = version;
+				upToDate = false;
+			}
+		}
+		return upToDate;
+	}
+
 	public void refresh(Player player, Inventory inventory) {
+		refresh(player, inventory, null, null, null);
+	}
+
+	/**
+	 * Refreshes only the icons that display the given variable.
+	 */
+	public void refresh(Player player, Inventory inventory, Variable variable) {
+		refresh(player, inventory, variable, null, null);
+	}
+
+	/**
+	 * Refreshes only the icons that display a placeholder of PlaceholderAPI with the given identifier.
+	 */
+	public void refresh(Player player, Inventory inventory, String placeholderIdentifier) {
+		refresh(player, inventory, null, placeholderIdentifier, null);
+	}
+
+	/**
+	 * Same as {@link #refresh(Player, Inventory)}, but the icons whose name and lore can be calculated
+	 * outside the main thread are only added to the list, to be calculated by the worker.
+	 * The results are displayed later with {@link #applyRefresh(Player, Inventory, int, ExtendedIcon, String, List)}.
+	 */
+	public void refresh(Player player, Inventory inventory, List<Integer> asyncSlots) {
+		refresh(player, inventory, null, null, asyncSlots);
+	}
+
+	private void refresh(Player player, Inventory inventory, Variable changedVariable, String changedPlaceholder, List<Integer> asyncSlots) {
+		boolean targeted = changedVariable != null || changedPlaceholder != null;
+
+		if (!(inventory.getHolder() instanceof MenuInventoryHolder)) {
+			return;
+		}
+
+		MenuSnapshot snapshot = ((MenuInventoryHolder) inventory.getHolder()).getSnapshot();
+
 		try {
 			for (int i = 0; i < icons.length; i++) {
 				if (icons[i] != null && icons[i] instanceof ExtendedIcon) {
 					ExtendedIcon extIcon = (ExtendedIcon) icons[i];
 
+					if (targeted) {
+						// Only the icons depending on what changed
+						if (changedVariable != null ? !extIcon.dependsOn(changedVariable) : !extIcon.dependsOnPlaceholder(changedPlaceholder)) {
+							continue;
+						}
+					}
+
 					if (extIcon.hasViewPermission() || extIcon.hasVariables()) {
 						// Then we have to refresh it
-						if (extIcon.canViewIcon(player)) {
-
-							if (inventory.getItem(i) == null) {
-								ItemStack newItem = ItemUtils.hideAttributes(extIcon.createItemstack(player));
-								inventory.setItem(i, newItem);
-							} else {
-								// Performance, only update name and lore
-								ItemStack oldItem = ItemUtils.hideAttributes(inventory.getItem(i));
-								ItemMeta meta = oldItem.getItemMeta();
-								meta.setDisplayName(extIcon.calculateName(player));
-								meta.setLore(extIcon.calculateLore(player));
-								oldItem.setItemMeta(meta);
+						if (!extIcon.canViewIcon(player)) {
+							if (!snapshot.isHidden(i)) {
+								inventory.setItem(i, null);
+								snapshot.setHidden(i);
+							}
+							continue;
+						}
+
+						if (!extIcon.hasVariables()) {
+							// Only the visibility can change
+							if (!snapshot.isShown(i)) {
+								inventory.setItem(i, extIcon.createDisplayItemstack(player));
+								snapshot.setShown(i, null, null);
 							}
+							continue;
+						}
 
-						} else {
-							inventory.setItem(i, null);
+						if (asyncSlots != null && extIcon.isAsyncSafe()) {
+							asyncSlots.add(i);
+							continue;
 						}
+
+						display(player, inventory, snapshot, i, extIcon, extIcon.calculateName(player), extIcon.calculateLore(player));
 					}
 				}
 			}
@@ -132,6 +364,106 @@ public class ExtendedIconMenu extends IconMenu {
 		}
 	}
 
+	/**
+	 * Displays the name and the lore of an icon calculated by the worker, on the main thread.
+	 */
+	public void applyRefresh(Player player, Inventory inventory, int slot, ExtendedIcon icon, String name, List<String> lore) {
+		if (!(inventory.getHolder() instanceof MenuInventoryHolder) || getIconRaw(slot) != icon) {
+			return;
+		}
+
+		MenuSnapshot snapshot = ((MenuInventoryHolder) inventory.getHolder()).getSnapshot();
+		if (snapshot.isHidden(slot)) {
+			// Hidden in the meanwhile
+			return;
+		}
+
+		try {
+			display(player, inventory, snapshot, slot, icon, name, lore);
+		} catch (Exception e) {
+			e.printStackTrace();
+			player.sendMessage(ChatColor.RED + "An internal error occurred while refreshing the menu. The staff should check the console for errors.");
+		}
+	}
+
+	private void display(Player player, Inventory inventory, MenuSnapshot snapshot, int slot, ExtendedIcon extIcon, String name, List<String> lore) {
+		if (snapshot.matches(slot, name, lore)) {
+			// Nothing changed, don't send the slot again
+			return;
+		}
+
+		if (!snapshot.isShown(slot) || inventory.getItem(slot) == null) {
+			inventory.setItem(slot, extIcon.createDisplayItemstack(player, name, lore));
+		} else {
+			// Performance, only update name and lore (the attributes of the displayed item are already hidden)
+			ItemStack oldItem = inventory.getItem(slot);
+			ItemMeta meta = oldItem.getItemMeta();
+			meta.setDisplayName(name);
+			meta.setLore(lore);
+			oldItem.setItemMeta(meta);
+		}
+
+		snapshot.setShown(slot, name, lore);
+	}
+
+	/**
+	 * Rebuilds the prepared items of the icons displaying the head of the player, now that the texture is known.
+	 */
+	public void onSkullResolved(String owner) {
+		boolean found = false;
+
+		for (Icon icon : icons) {
+			if (icon != null && owner.equalsIgnoreCase(icon.getSkullOwner())) {
+				icon.compileTemplate();
+				found = true;
+			}
+		}
+
+		if (found) {
+			prerenderedContents.clear();
+		}
+	}
+
+	/**
+	 * Updates only the slots displaying the head of the player, now that the texture is known.
+	 */
+	public void refreshSkulls(Player player, Inventory inventory, String owner) {
+		if (!(inventory.getHolder() instanceof MenuInventoryHolder)) {
+			return;
+		}
+
+		MenuSnapshot snapshot = ((MenuInventoryHolder) inventory.getHolder()).getSnapshot();
+
+		for (int i = 0; i < icons.length; i++) {
+			if (icons[i] instanceof ExtendedIcon && snapshot.isShown(i)) {
+				ExtendedIcon extIcon = (ExtendedIcon) icons[i];
+
+				if (owner.equalsIgnoreCase(extIcon.calculateSkullOwner(player))) {
+					if (extIcon.hasVariables()) {
+						String name = extIcon.calculateName(player);
+						List<String> lore = extIcon.calculateLore(player);
+						inventory.setItem(i, extIcon.createDisplayItemstack(player, name, lore));
+						snapshot.setShown(i, name, lore);
+					} else {
+						inventory.setItem(i, extIcon.createDisplayItemstack(player));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if at least one icon displays the variable.
+	 */
+	public boolean dependsOn(Variable variable) {
+		for (Icon icon : icons) {
+			if (icon != null && icon.dependsOn(variable)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void sendNoPermissionMessage(CommandSender sender) {
 		String noPermMessage = ChestCommands.getLang().no_open_permission;
 		if (noPermMessage != null && !noPermMessage.isEmpty()) {
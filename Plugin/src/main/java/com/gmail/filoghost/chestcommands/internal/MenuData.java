@@ -33,6 +33,7 @@ public class MenuData {
 	private ClickType clickType;
 	private List<IconCommand> openActions;
 	private int refreshTenths;
+	private int clickCooldown = -1;
 
 	public MenuData(String title, int rows) {
 		this.title = title;
@@ -107,4 +108,12 @@ public class MenuData {
 	public void setRefreshTenths(int refreshTenths) {
 		this.refreshTenths = refreshTenths;
 	}
+
+	public int getClickCooldown() {
+		return clickCooldown;
+	}
+
+	public void setClickCooldown(int clickCooldown) {
+		this.clickCooldown = clickCooldown;
+	}
 }
@@ -26,9 +26,11 @@ import org.bukkit.inventory.InventoryHolder;
 public class MenuInventoryHolder implements InventoryHolder {
 
 	private IconMenu iconMenu;
+	private MenuSnapshot snapshot;
 
 	public MenuInventoryHolder(IconMenu iconMenu) {
 		this.iconMenu = iconMenu;
+		this.snapshot = new MenuSnapshot(iconMenu.getSize());
 	}
 
 	@Override
@@ -49,6 +51,14 @@ public class MenuInventoryHolder implements InventoryHolder {
 	public void setIconMenu(IconMenu iconMenu) {
 		Validate.notNull(iconMenu, "IconMenu cannot be null");
 		this.iconMenu = iconMenu;
+		this.snapshot = new MenuSnapshot(iconMenu.getSize());
+	}
+
+	/**
+	 * Returns what was last displayed to the viewer of this inventory.
+	 */
+	public MenuSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 }
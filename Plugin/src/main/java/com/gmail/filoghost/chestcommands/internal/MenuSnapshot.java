@@ -0,0 +1,65 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import java.util.List;
+
+/**
+ * Remembers what was last displayed in each slot of a menu to a single viewer,
+ * so that refreshing it only touches the slots whose output actually changed.
+ */
+public class MenuSnapshot {
+
+	private static final byte UNKNOWN = 0, SHOWN = 1, HIDDEN = 2;
+
+	private final byte[] states;
+	private final String[] names;
+	private final List<?>[] lores;
+
+	public MenuSnapshot(int size) {
+		states = new byte[size];
+		names = new String[size];
+		lores = new List<?>[size];
+	}
+
+	public boolean isShown(int slot) {
+		return states[slot] == SHOWN;
+	}
+
+	public boolean isHidden(int slot) {
+		return states[slot] == HIDDEN;
+	}
+
+	public boolean matches(int slot, String name, List<String> lore) {
+		return states[slot] == SHOWN && equal(names[slot], name) && equal(lores[slot], lore);
+	}
+
+	public void setShown(int slot, String name, List<String> lore) {
+		states[slot] = SHOWN;
+		names[slot] = name;
+		lores[slot] = lore;
+	}
+
+	public void setHidden(int slot) {
+		states[slot] = HIDDEN;
+		names[slot] = null;
+		lores[slot] = null;
+	}
+
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
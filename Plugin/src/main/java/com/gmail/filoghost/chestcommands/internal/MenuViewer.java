@@ -0,0 +1,108 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.task.RefreshWorker;
+import com.gmail.filoghost.chestcommands.util.TimingWheel.Timeout;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+
+import java.util.List;
+
+/**
+ * A player who is currently looking at an ExtendedIconMenu.
+ */
+public class MenuViewer {
+
+	private final Player player;
+	private final Inventory inventory;
+	private final ExtendedIconMenu menu;
+
+	private Timeout<MenuViewer> refreshTimeout;
+	private boolean closed;
+	private boolean asyncRefreshPending;
+
+	public MenuViewer(Player player, Inventory inventory, ExtendedIconMenu menu) {
+		this.player = player;
+		this.inventory = inventory;
+		this.menu = menu;
+	}
+
+	public Player getPlayer() {
+		return player;
+	}
+
+	public Inventory getInventory() {
+		return inventory;
+	}
+
+	public ExtendedIconMenu getMenu() {
+		return menu;
+	}
+
+	public void refresh() {
+		menu.refresh(player, inventory);
+	}
+
+	/**
+	 * Refreshes the menu, leaving the icons that can be calculated in another thread to the worker.
+	 */
+	public void refresh(RefreshWorker worker) {
+		List<Integer> asyncSlots = Utils.newArrayList();
+		menu.refresh(player, inventory, asyncSlots);
+
+		// If the previous results didn't arrive yet, those icons are skipped this time
+		if (!asyncSlots.isEmpty() && !asyncRefreshPending) {
+			worker.submit(this, asyncSlots);
+		}
+	}
+
+	public void refresh(Variable changedVariable) {
+		menu.refresh(player, inventory, changedVariable);
+	}
+
+	public void refresh(String changedPlaceholder) {
+		menu.refresh(player, inventory, changedPlaceholder);
+	}
+
+	public void setRefreshTimeout(Timeout<MenuViewer> refreshTimeout) {
+		this.refreshTimeout = refreshTimeout;
+	}
+
+	public boolean isAsyncRefreshPending() {
+		return asyncRefreshPending;
+	}
+
+	public void setAsyncRefreshPending(boolean asyncRefreshPending) {
+		this.asyncRefreshPending = asyncRefreshPending;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Called when the player is no longer looking at the menu, stops the scheduled refreshes.
+	 */
+	public void close() {
+		closed = true;
+		if (refreshTimeout != null) {
+			refreshTimeout.cancel();
+			refreshTimeout = null;
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers the result of permission checks for each player, because permission plugins may have to
+ * go through inheritance trees every time. Used for the view and click permissions of icons.
+ *
+ * Bukkit has no event for permission changes, so the snapshot of a player is discarded after
+ * "permission-cache-seconds", when joining, quitting or changing world, and through the API.
+ */
+public class PermissionCache {
+
+	// Only accessed from the main thread
+	private final Map<UUID, Snapshot> snapshots = Utils.newHashMap();
+
+	private long hits;
+	private long misses;
+
+	public boolean hasPermission(Player player, String permission) {
+		long maxAge = ChestCommands.getSettings().permission_cache_seconds * 1000L;
+		if (maxAge <= 0) {
+			misses++;
+			return player.hasPermission(permission);
+		}
+
+		long now = System.currentTimeMillis();
+		Snapshot snapshot = snapshots.get(player.getUniqueId());
+
+		if (snapshot == null || now - snapshot.creationTime >= maxAge) {
+			snapshot = new Snapshot(now);
+			snapshots.put(player.getUniqueId(), snapshot);
+		}
+
+		Boolean result = snapshot.permissions.get(permission);
+		if (result == null) {
+			misses++;
+			result = player.hasPermission(permission);
+			snapshot.permissions.put(permission, result);
+		} else {
+			hits++;
+		}
+
+		return result;
+	}
+
+	public void invalidate(Player player) {
+		snapshots.remove(player.getUniqueId());
+	}
+
+	public void invalidateAll() {
+		snapshots.clear();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public int getSize() {
+		return snapshots.size();
+	}
+
+	public void resetCounters() {
+		hits = 0;
+		misses = 0;
+	}
+
+
+	private static class Snapshot {
+
+		private final long creationTime;
+		private final Map<String, Boolean> permissions = Utils.newHashMap();
+
+		private Snapshot(long creationTime) {
+			this.creationTime = creationTime;
+		}
+	}
+
+}
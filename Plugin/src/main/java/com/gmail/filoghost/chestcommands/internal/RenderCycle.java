@@ -0,0 +1,56 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+/**
+ * A counter that advances every time menus are refreshed. Values that are the same for every player
+ * are calculated once per cycle and shared between all the viewers.
+ */
+public class RenderCycle {
+
+	private static volatile long current;
+
+	public static long current() {
+		return current;
+	}
+
+	public static void next() {
+		current++;
+	}
+
+
+	/**
+	 * An immutable value calculated in a given cycle.
+	 */
+	public static class Cached<T> {
+
+		private final long cycle;
+		private final T value;
+
+		public Cached(T value) {
+			this.cycle = current;
+			this.value = value;
+		}
+
+		public boolean isValid() {
+			return cycle == current;
+		}
+
+		public T getValue() {
+			return value;
+		}
+	}
+
+}
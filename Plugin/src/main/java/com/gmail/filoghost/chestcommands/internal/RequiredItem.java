@@ -19,6 +19,8 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.List;
+
 public class RequiredItem {
 
 	private Material material;
@@ -79,6 +81,13 @@ public class RequiredItem {
 	}
 
 	public boolean takeItem(Player player) {
+		return takeItem(player, null);
+	}
+
+	/**
+	 * @param taken if not null, copies of the removed items are added to it, to give them back if needed
+	 */
+	public boolean takeItem(Player player, List<ItemStack> taken) {
 		if (amount <= 0) {
 			return true;
 		}
@@ -95,9 +104,17 @@ public class RequiredItem {
 
 			if (current != null && current.getType() == material && isValidDataValue(current.getDurability())) {
 				if (current.getAmount() > itemsToTake) {
+					if (taken != null) {
+						ItemStack takenItem = current.clone();
+						takenItem.setAmount(itemsToTake);
+						taken.add(takenItem);
+					}
 					current.setAmount(current.getAmount() - itemsToTake);
 					return true;
 				} else {
+					if (taken != null) {
+						taken.add(current.clone());
+					}
 					itemsToTake -= current.getAmount();
 					player.getInventory().setItem(i, new ItemStack(Material.AIR));
 				}
@@ -0,0 +1,342 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.config.yaml.PluginConfig;
+import com.gmail.filoghost.chestcommands.util.BukkitUtils;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Locations of the menu signs, so that clicking a block doesn't require reading its state to know if it's a menu sign.
+ * Signs are grouped by world and chunk, and saved to a file. When a chunk is loaded, the signs inside it are checked again.
+ *
+ * Signs created before the index existed are added the first time they're clicked.
+ * The signs of loaded chunks that turned out not to be menu signs are also remembered, until the chunk is unloaded.
+ */
+public class SignIndex {
+
+	private static final Set<Material> SIGN_MATERIALS = EnumSet.noneOf(Material.class);
+	private static final String MENU_HEADER = ChatColor.DARK_BLUE + "[menu]";
+
+	static {
+		// The names of the sign materials change between versions (SIGN_POST, WALL_SIGN, OAK_SIGN, ...)
+		for (Material material : Material.values()) {
+			if (material.name().contains("SIGN")) {
+				SIGN_MATERIALS.add(material);
+			}
+		}
+	}
+
+	private final Plugin plugin;
+	private final PluginConfig file;
+
+	// World name -> chunk key -> block key -> sign
+	private final Map<String, Map<Long, Map<Long, MenuSign>>> signs = Utils.newHashMap();
+	// World name -> chunk key -> block keys of the signs that are not menu signs
+	private final Map<String, Map<Long, Set<Long>>> plainSigns = Utils.newHashMap();
+
+	private boolean changed;
+
+	public SignIndex(Plugin plugin) {
+		this.plugin = plugin;
+		this.file = new PluginConfig(plugin, "signs.yml");
+	}
+
+	public static boolean isSignMaterial(Material material) {
+		return SIGN_MATERIALS.contains(material);
+	}
+
+	public static boolean isMenuHeader(String line) {
+		return line.equalsIgnoreCase(MENU_HEADER);
+	}
+
+	public MenuSign get(Block block) {
+		Map<Long, MenuSign> chunkSigns = getChunkSigns(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4, false);
+		if (chunkSigns == null) {
+			return null;
+		}
+
+		return chunkSigns.get(blockKey(block.getX(), block.getY(), block.getZ()));
+	}
+
+	/**
+	 * Returns the menu sign of the block. The state of signs that are not in the index is read only the first time,
+	 * then they're remembered as plain signs until their chunk is unloaded.
+	 */
+	public MenuSign getOrIndex(Block block) {
+		MenuSign menuSign = get(block);
+		if (menuSign != null) {
+			return menuSign;
+		}
+
+		Set<Long> chunkPlainSigns = getChunkPlainSigns(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4, false);
+		long blockKey = blockKey(block.getX(), block.getY(), block.getZ());
+		if (chunkPlainSigns != null && chunkPlainSigns.contains(blockKey)) {
+			return null;
+		}
+
+		// The sign may have been created before the index existed
+		BlockState state = block.getState();
+		if (state instanceof Sign && isMenuHeader(((Sign) state).getLine(0))) {
+			return add(block, BukkitUtils.addYamlExtension(((Sign) state).getLine(1)));
+		}
+
+		addPlain(block);
+		return null;
+	}
+
+	/**
+	 * Remembers that the block is a sign which doesn't open a menu.
+	 */
+	public void addPlain(Block block) {
+		getChunkPlainSigns(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4, true).add(blockKey(block.getX(), block.getY(), block.getZ()));
+	}
+
+	public MenuSign add(Block block, String menuFileName) {
+		removePlain(block);
+		MenuSign menuSign = new MenuSign(block.getX(), block.getY(), block.getZ(), menuFileName);
+		add(block.getWorld().getName(), menuSign);
+		changed = true;
+		return menuSign;
+	}
+
+	private void add(String world, MenuSign menuSign) {
+		getChunkSigns(world, menuSign.x >> 4, menuSign.z >> 4, true).put(blockKey(menuSign.x, menuSign.y, menuSign.z), menuSign);
+	}
+
+	public void remove(Block block) {
+		Map<Long, MenuSign> chunkSigns = getChunkSigns(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4, false);
+
+		if (chunkSigns != null && chunkSigns.remove(blockKey(block.getX(), block.getY(), block.getZ())) != null) {
+			changed = true;
+		}
+		removePlain(block);
+	}
+
+	private void removePlain(Block block) {
+		Set<Long> chunkPlainSigns = getChunkPlainSigns(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4, false);
+		if (chunkPlainSigns != null) {
+			chunkPlainSigns.remove(blockKey(block.getX(), block.getY(), block.getZ()));
+		}
+	}
+
+	/**
+	 * Removes the signs of the chunk that have been destroyed or rewritten while it wasn't loaded, or without firing events.
+	 */
+	public void validateChunk(Chunk chunk) {
+		Map<Long, MenuSign> chunkSigns = getChunkSigns(chunk.getWorld().getName(), chunk.getX(), chunk.getZ(), false);
+		if (chunkSigns == null) {
+			return;
+		}
+
+		Iterator<MenuSign> iter = chunkSigns.values().iterator();
+		while (iter.hasNext()) {
+			MenuSign menuSign = iter.next();
+			Block block = chunk.getBlock(menuSign.x & 15, menuSign.y, menuSign.z & 15);
+			if (!isSignMaterial(block.getType())) {
+				iter.remove();
+				changed = true;
+				continue;
+			}
+
+			BlockState state = block.getState();
+			if (!(state instanceof Sign) || !isMenuHeader(((Sign) state).getLine(0))) {
+				iter.remove();
+				changed = true;
+			} else if (!BukkitUtils.addYamlExtension(((Sign) state).getLine(1)).equals(menuSign.menuFileName)) {
+				// Another menu was written on the sign
+				menuSign.menuFileName = BukkitUtils.addYamlExtension(((Sign) state).getLine(1));
+				menuSign.menu = null;
+				changed = true;
+			}
+		}
+	}
+
+	/**
+	 * Forgets the plain signs of the chunk, since they may be changed while it's not loaded.
+	 */
+	public void unloadChunk(Chunk chunk) {
+		Map<Long, Set<Long>> worldPlainSigns = plainSigns.get(chunk.getWorld().getName());
+		if (worldPlainSigns != null) {
+			worldPlainSigns.remove(chunkKey(chunk.getX(), chunk.getZ()));
+		}
+	}
+
+	/**
+	 * Forgets the resolved menus, since they are created again when reloading.
+	 */
+	public void clearMenus() {
+		for (Map<Long, Map<Long, MenuSign>> worldSigns : signs.values()) {
+			for (Map<Long, MenuSign> chunkSigns : worldSigns.values()) {
+				for (MenuSign menuSign : chunkSigns.values()) {
+					menuSign.menu = null;
+				}
+			}
+		}
+	}
+
+	private Map<Long, MenuSign> getChunkSigns(String world, int chunkX, int chunkZ, boolean create) {
+		Map<Long, Map<Long, MenuSign>> worldSigns = signs.get(world);
+		if (worldSigns == null) {
+			if (!create) {
+				return null;
+			}
+			worldSigns = Utils.newHashMap();
+			signs.put(world, worldSigns);
+		}
+
+		Long chunkKey = chunkKey(chunkX, chunkZ);
+		Map<Long, MenuSign> chunkSigns = worldSigns.get(chunkKey);
+		if (chunkSigns == null && create) {
+			chunkSigns = Utils.newHashMap();
+			worldSigns.put(chunkKey, chunkSigns);
+		}
+
+		return chunkSigns;
+	}
+
+	private Set<Long> getChunkPlainSigns(String world, int chunkX, int chunkZ, boolean create) {
+		Map<Long, Set<Long>> worldPlainSigns = plainSigns.get(world);
+		if (worldPlainSigns == null) {
+			if (!create) {
+				return null;
+			}
+			worldPlainSigns = Utils.newHashMap();
+			plainSigns.put(world, worldPlainSigns);
+		}
+
+		Long chunkKey = chunkKey(chunkX, chunkZ);
+		Set<Long> chunkPlainSigns = worldPlainSigns.get(chunkKey);
+		if (chunkPlainSigns == null && create) {
+			chunkPlainSigns = new HashSet<Long>();
+			worldPlainSigns.put(chunkKey, chunkPlainSigns);
+		}
+
+		return chunkPlainSigns;
+	}
+
+	private static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	private static long blockKey(int x, int y, int z) {
+		return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+	}
+
+	public void load() {
+		signs.clear();
+		plainSigns.clear();
+
+		try {
+			file.load();
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.WARNING, "Could not load signs.yml, menu signs will be added again when clicked.", e);
+			return;
+		}
+
+		// Format: world -> list of "x,y,z,menu"
+		for (String world : file.getKeys(false)) {
+			for (String line : file.getStringList(world)) {
+				String[] parts = line.split(",", 4);
+				if (parts.length != 4) {
+					continue;
+				}
+
+				try {
+					add(world, new MenuSign(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), parts[3]));
+				} catch (NumberFormatException e) {
+					// Skip it
+				}
+			}
+		}
+		changed = false;
+	}
+
+	public void save() {
+		if (!changed) {
+			return;
+		}
+
+		for (String key : file.getKeys(false)) {
+			file.set(key, null);
+		}
+		for (Entry<String, Map<Long, Map<Long, MenuSign>>> worldEntry : signs.entrySet()) {
+			List<String> lines = Utils.newArrayList();
+			for (Map<Long, MenuSign> chunkSigns : worldEntry.getValue().values()) {
+				for (MenuSign menuSign : chunkSigns.values()) {
+					lines.add(menuSign.x + "," + menuSign.y + "," + menuSign.z + "," + menuSign.menuFileName);
+				}
+			}
+			if (!lines.isEmpty()) {
+				file.set(worldEntry.getKey(), lines);
+			}
+		}
+
+		try {
+			file.save();
+			changed = false;
+		} catch (IOException e) {
+			plugin.getLogger().log(Level.WARNING, "Could not save signs.yml.", e);
+		}
+	}
+
+
+	public static class MenuSign {
+
+		private final int x, y, z;
+		private String menuFileName;
+		private ExtendedIconMenu menu;
+
+		private MenuSign(int x, int y, int z, String menuFileName) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.menuFileName = menuFileName;
+		}
+
+		public String getMenuFileName() {
+			return menuFileName;
+		}
+
+		/**
+		 * Returns the menu opened by the sign, or null if it doesn't exist.
+		 */
+		public ExtendedIconMenu getMenu() {
+			if (menu == null) {
+				menu = ChestCommands.getFileNameToMenuMap().get(menuFileName);
+			}
+			return menu;
+		}
+	}
+
+}
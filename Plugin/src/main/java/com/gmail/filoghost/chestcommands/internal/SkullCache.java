@@ -0,0 +1,434 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.config.yaml.PluginConfig;
+import com.gmail.filoghost.chestcommands.util.MenuUtils;
+import com.gmail.filoghost.chestcommands.util.NMSUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the textures of skull owners in a separate thread, instead of letting the server look them up on the main thread.
+ * The lookup goes through the profile cache and the session service of the server, so its proxy, its usercache.json
+ * and the online mode are respected. Textures are saved to a file, so that they are available immediately after a restart.
+ *
+ * Until the texture of a player is known, the default head is displayed. When it is resolved,
+ * only the slots showing that head are updated.
+ */
+public class SkullCache {
+
+	private static final Pattern VALID_NAME = Pattern.compile("[a-zA-Z0-9_]{1,16}");
+	private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+	private static final long SAVE_INTERVAL_TICKS = 5 * 60 * 20;
+
+	// How the profile is copied between skull metas: the setProfile method if present, otherwise the profile field
+	private static Method profileSetter;
+	private static Field profileField;
+	private static boolean profileAccessorsLoaded;
+
+	// The session service of the server, used to read the textures of a profile
+	private static Object sessionService;
+	private static Method fillProfileProperties;
+	private static Class<?> gameProfileClass;
+	private static boolean sessionServiceLoaded;
+
+	private final Plugin plugin;
+	private final PluginConfig file;
+	private final ExecutorService executor;
+
+	// Lowercase name -> texture, empty if the player doesn't exist
+	private final Map<String, CachedTexture> textures = new ConcurrentHashMap<String, CachedTexture>();
+	// Lowercase name -> skull meta with the texture applied, created on the main thread
+	private final Map<String, SkullMeta> skullMetas = new ConcurrentHashMap<String, SkullMeta>();
+	// Lowercase name -> time of the next attempt, for failed requests
+	private final Map<String, Long> failures = new ConcurrentHashMap<String, Long>();
+	private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private volatile boolean changed;
+
+	public SkullCache(Plugin plugin) {
+		this.plugin = plugin;
+		this.file = new PluginConfig(plugin, "skulls.yml");
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ChestCommands skull resolver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Applies the texture of the owner to the skull, or leaves the default head if it's not known yet.
+	 * In that case the texture is requested, and the menus are updated once it's available.
+	 */
+	public void applyTexture(SkullMeta skullMeta, String owner) {
+		if (owner == null || !VALID_NAME.matcher(owner).matches()) {
+			return;
+		}
+
+		if (!loadProfileAccessors() || !loadSessionService()) {
+			// Fallback to the old method, which may look up the profile on the main thread
+			skullMeta.setOwner(owner);
+			return;
+		}
+
+		String key = owner.toLowerCase();
+		SkullMeta texturedMeta = skullMetas.get(key);
+
+		if (texturedMeta == null) {
+			CachedTexture texture = textures.get(key);
+
+			if (texture == null) {
+				request(owner, key);
+				return;
+			}
+
+			if (texture.isExpired()) {
+				// Keep using the old texture in the meanwhile
+				request(owner, key);
+			}
+
+			if (texture.isMissing()) {
+				return;
+			}
+
+			if (!Bukkit.isPrimaryThread()) {
+				// The item can only be created on the main thread (loaded from the file, not used since the restart)
+				scheduleSkullCreation(owner, key, texture);
+				return;
+			}
+
+			texturedMeta = createSkullMeta(owner, texture);
+			if (texturedMeta == null) {
+				return;
+			}
+			skullMetas.put(key, texturedMeta);
+
+		} else {
+			CachedTexture texture = textures.get(key);
+			if (texture != null && texture.isExpired()) {
+				request(owner, key);
+			}
+		}
+
+		copyProfile(texturedMeta, skullMeta);
+	}
+
+	private void request(final String owner, final String key) {
+		Long retryTime = failures.get(key);
+		if (retryTime != null && retryTime > System.currentTimeMillis()) {
+			return;
+		}
+
+		if (!pending.add(key)) {
+			// Already requested
+			return;
+		}
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				final CachedTexture texture;
+				try {
+					texture = fetchTexture(owner);
+				} catch (Exception e) {
+					failures.put(key, System.currentTimeMillis() + RETRY_DELAY);
+					pending.remove(key);
+					return;
+				}
+
+				Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
+
+					@Override
+					public void run() {
+						pending.remove(key);
+						failures.remove(key);
+						onTextureResolved(owner, key, texture);
+					}
+				});
+			}
+		});
+	}
+
+	private void scheduleSkullCreation(final String owner, final String key, final CachedTexture texture) {
+		if (!pending.add(key)) {
+			return;
+		}
+
+		Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
+
+			@Override
+			public void run() {
+				pending.remove(key);
+				onTextureResolved(owner, key, texture);
+			}
+		});
+	}
+
+	private void onTextureResolved(String owner, String key, CachedTexture texture) {
+		CachedTexture oldTexture = textures.put(key, texture);
+		if (oldTexture != texture) {
+			changed = true;
+		}
+
+		if (oldTexture != null && oldTexture.getValue().equals(texture.getValue()) && skullMetas.containsKey(key)) {
+			// The skin didn't change, nothing to update
+			return;
+		}
+
+		skullMetas.remove(key);
+		if (!texture.isMissing()) {
+			SkullMeta texturedMeta = createSkullMeta(owner, texture);
+			if (texturedMeta != null) {
+				skullMetas.put(key, texturedMeta);
+			}
+		}
+
+		MenuUtils.refreshSkulls(owner);
+	}
+
+	@SuppressWarnings("deprecation")
+	private CachedTexture fetchTexture(String owner) throws Exception {
+		// Uses the profile cache of the server, in offline mode no request is made
+		UUID uuid = Bukkit.getOfflinePlayer(owner).getUniqueId();
+		if (uuid == null || uuid.version() != 4) {
+			// The player doesn't exist, or it's an offline mode profile without a skin
+			return new CachedTexture("", System.currentTimeMillis());
+		}
+
+		Object profile = gameProfileClass.getConstructor(UUID.class, String.class).newInstance(uuid, owner);
+		profile = fillProfileProperties.invoke(sessionService, profile, true);
+
+		Object properties = profile.getClass().getMethod("getProperties").invoke(profile);
+		for (Object property : (Collection<?>) properties.getClass().getMethod("get", Object.class).invoke(properties, "textures")) {
+			Method getValue;
+			try {
+				getValue = property.getClass().getMethod("getValue");
+			} catch (NoSuchMethodException e) {
+				getValue = property.getClass().getMethod("value");
+			}
+			return new CachedTexture((String) getValue.invoke(property), System.currentTimeMillis());
+		}
+
+		// The session service doesn't throw when the request fails, for example because of the rate limit
+		throw new IOException("No textures for " + owner);
+	}
+
+	private SkullMeta createSkullMeta(String owner, CachedTexture texture) {
+		Material material = Material.matchMaterial("PLAYER_HEAD");
+		short durability = 0;
+		if (material == null) {
+			material = Material.matchMaterial("SKULL_ITEM");
+			durability = 3;
+		}
+
+		try {
+			ItemStack skull = new ItemStack(material, 1, durability);
+			skull = Bukkit.getUnsafe().modifyItemStack(skull, "{SkullOwner:{Name:\"" + owner + "\",Properties:{textures:[{Value:\"" + texture.getValue() + "\"}]}}}");
+			ItemMeta meta = skull.getItemMeta();
+			return meta instanceof SkullMeta ? (SkullMeta) meta : null;
+		} catch (Throwable t) {
+			plugin.getLogger().log(Level.WARNING, "Could not apply the texture of " + owner + " to a skull.", t);
+			return null;
+		}
+	}
+
+	private static void copyProfile(SkullMeta from, SkullMeta to) {
+		if (from.getClass() != to.getClass()) {
+			to.setOwner(from.getOwner());
+			return;
+		}
+
+		try {
+			Object profile = profileField.get(from);
+			if (profileSetter != null) {
+				// Also updates the serialized copy of the profile in newer versions
+				profileSetter.invoke(to, profile);
+			} else {
+				profileField.set(to, profile);
+			}
+		} catch (Exception e) {
+			to.setOwner(from.getOwner());
+		}
+	}
+
+	private static synchronized boolean loadProfileAccessors() {
+		if (!profileAccessorsLoaded) {
+			profileAccessorsLoaded = true;
+			try {
+				Class<?> metaClass = NMSUtils.getCraftBukkitClass("inventory.CraftMetaSkull");
+				Field field = metaClass.getDeclaredField("profile");
+				field.setAccessible(true);
+
+				try {
+					Method setter = metaClass.getDeclaredMethod("setProfile", field.getType());
+					setter.setAccessible(true);
+					profileSetter = setter;
+				} catch (NoSuchMethodException e) {
+					// Older versions only have the field
+				}
+				profileField = field;
+			} catch (Exception e) {
+				ChestCommands.getInstance().getLogger().log(Level.WARNING, "Could not enable the skull cache for this version, skulls may be loaded slowly.", e);
+			}
+		}
+		return profileField != null;
+	}
+
+	private static synchronized boolean loadSessionService() {
+		if (!sessionServiceLoaded) {
+			sessionServiceLoaded = true;
+			try {
+				Object server = Bukkit.getServer().getClass().getMethod("getServer").invoke(Bukkit.getServer());
+				for (Method method : server.getClass().getMethods()) {
+					if (method.getParameterTypes().length == 0 && method.getReturnType().getName().equals("com.mojang.authlib.minecraft.MinecraftSessionService")) {
+						Object service = method.invoke(server);
+						for (Method serviceMethod : method.getReturnType().getMethods()) {
+							if (serviceMethod.getName().equals("fillProfileProperties") && serviceMethod.getParameterTypes().length == 2) {
+								gameProfileClass = serviceMethod.getParameterTypes()[0];
+								fillProfileProperties = serviceMethod;
+								sessionService = service;
+							}
+						}
+						break;
+					}
+				}
+			} catch (Exception e) {
+				ChestCommands.getInstance().getLogger().log(Level.WARNING, "Could not find the session service of the server.", e);
+			}
+
+			if (sessionService == null) {
+				ChestCommands.getInstance().getLogger().warning("Could not enable the skull cache for this version, skulls may be loaded slowly.");
+			}
+		}
+		return sessionService != null;
+	}
+
+	public void load() {
+		textures.clear();
+		skullMetas.clear();
+
+		try {
+			file.load();
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.WARNING, "Could not load skulls.yml, skull textures will be requested again.", e);
+			return;
+		}
+
+		for (String key : file.getKeys(false)) {
+			ConfigurationSection section = file.getConfigurationSection(key);
+			if (section != null) {
+				textures.put(key, new CachedTexture(section.getString("texture", ""), section.getLong("time")));
+			}
+		}
+		changed = false;
+	}
+
+	public void save() {
+		if (!changed) {
+			return;
+		}
+
+		for (String key : file.getKeys(false)) {
+			file.set(key, null);
+		}
+		for (Entry<String, CachedTexture> entry : textures.entrySet()) {
+			file.set(entry.getKey() + ".texture", entry.getValue().getValue());
+			file.set(entry.getKey() + ".time", entry.getValue().getTime());
+		}
+
+		try {
+			file.save();
+			changed = false;
+		} catch (IOException e) {
+			plugin.getLogger().log(Level.WARNING, "Could not save skulls.yml.", e);
+		}
+	}
+
+	/**
+	 * Saves the new textures every few minutes, so that they are not lost if the server crashes.
+	 */
+	public void startAutoSave() {
+		Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, new Runnable() {
+
+			@Override
+			public void run() {
+				save();
+			}
+		}, SAVE_INTERVAL_TICKS, SAVE_INTERVAL_TICKS);
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+		save();
+	}
+
+
+	private static class CachedTexture {
+
+		private final String value;
+		private final long time;
+
+		public CachedTexture(String value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public boolean isMissing() {
+			return value.isEmpty();
+		}
+
+		public boolean isExpired() {
+			return System.currentTimeMillis() - time > TimeUnit.HOURS.toMillis(ChestCommands.getSettings().skull_cache_hours);
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import ee.winni.plugins.languageslib.LLBInterface;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the strings translated by the language plugin, grouped by language.
+ *
+ * The language of a player is the translation of the key "translation-language-key" in the config
+ * (for example a key that translates to "en" or "it"), so that players with the same language share the cache.
+ * The key must be set for translations to be cached: without it, a change of language cannot be detected,
+ * so every string is translated again each time.
+ */
+public class TranslationCache {
+
+	private static final String SHARED_PREFIX = "language:";
+	private static final String PLAYER_PREFIX = "player:";
+
+	private final LLBInterface languages;
+
+	// Player name -> language
+	private final Map<String, String> playerLanguages = new ConcurrentHashMap<String, String>();
+	// Language -> (source string -> translated string)
+	private final Map<String, Map<String, String>> translations = new ConcurrentHashMap<String, Map<String, String>>();
+
+	private volatile int generation;
+
+	public TranslationCache(LLBInterface languages) {
+		this.languages = languages;
+	}
+
+	public boolean isEnabled() {
+		return languages != null;
+	}
+
+	public String translate(Player player, String key) {
+		if (key.isEmpty() || languages == null || player == null) {
+			return key;
+		}
+
+		String language = getLanguage(player);
+		if (!isSharedLanguage(language)) {
+			return languages.getPlayerString(player.getName(), key);
+		}
+
+		Map<String, String> cache = getCache(language);
+		String translated = cache.get(key);
+
+		if (translated == null) {
+			translated = languages.getPlayerString(player.getName(), key);
+			if (translated == null) {
+				return null;
+			}
+			cache.put(key, translated);
+		}
+
+		return translated;
+	}
+
+	public String getLanguage(Player player) {
+		String language = playerLanguages.get(player.getName());
+		if (language == null) {
+			language = resolveLanguage(player);
+			playerLanguages.put(player.getName(), language);
+		}
+		return language;
+	}
+
+	/**
+	 * Returns true if the language can be shared by more players and its translations are cached,
+	 * false if it only belongs to one player (the language key is not set or not translated).
+	 */
+	public boolean isSharedLanguage(String language) {
+		return language.startsWith(SHARED_PREFIX);
+	}
+
+	/**
+	 * Called when a menu is opened, to notice if the player changed language since the last time.
+	 * The language is resolved again and compared with the cached one.
+	 */
+	public void checkLanguage(Player player) {
+		if (languages == null) {
+			return;
+		}
+
+		String oldLanguage = playerLanguages.get(player.getName());
+		if (oldLanguage == null) {
+			// Not cached yet
+			return;
+		}
+
+		String newLanguage = resolveLanguage(player);
+		if (!newLanguage.equals(oldLanguage)) {
+			playerLanguages.put(player.getName(), newLanguage);
+		}
+	}
+
+	/**
+	 * Should be called when the language of a player changes, or when the player quits.
+	 */
+	public void invalidate(Player player) {
+		playerLanguages.remove(player.getName());
+	}
+
+	/**
+	 * Should be called when the language plugin is reloaded.
+	 */
+	public void invalidateAll() {
+		playerLanguages.clear();
+		translations.clear();
+		generation++;
+	}
+
+	/**
+	 * Increased every time cached translations are discarded, so that copies of them can be discarded too.
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	private Map<String, String> getCache(String language) {
+		Map<String, String> cache = translations.get(language);
+		if (cache == null) {
+			cache = new ConcurrentHashMap<String, String>();
+			translations.put(language, cache);
+		}
+		return cache;
+	}
+
+	private String resolveLanguage(Player player) {
+		String languageKey = ChestCommands.getSettings().translation_language_key;
+
+		if (languageKey != null && !languageKey.isEmpty()) {
+			String language = languages.getPlayerString(player.getName(), languageKey);
+			if (language != null && !language.isEmpty() && !language.equals(languageKey)) {
+				return SHARED_PREFIX + language;
+			}
+		}
+
+		return PLAYER_PREFIX + player.getName();
+	}
+
+}
@@ -14,55 +14,87 @@
  */
 package com.gmail.filoghost.chestcommands.internal;
 
+import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 public enum Variable {
 
-	PLAYER("{player}") {
+	PLAYER("{player}", false, true) {
 		public String getReplacement(Player executor) {
 			return executor.getName();
 		}
 	},
 
-	ONLINE("{online}") {
+	ONLINE("{online}", true, false) {
 		public String getReplacement(Player executor) {
 			return String.valueOf(CachedGetters.getOnlinePlayers());
 		}
 	},
 
-	MAX_PLAYERS("{max_players}") {
+	MAX_PLAYERS("{max_players}", true, false) {
 		public String getReplacement(Player executor) {
 			return String.valueOf(Bukkit.getMaxPlayers());
 		}
 	},
 
-	MONEY("{money}") {
+	MONEY("{money}", false, false) {
+		@Override
+		public boolean isAsyncSafe() {
+			// Reading the balance from another thread must be allowed explicitly
+			return EconomyBridge.isPrefetchEnabled();
+		}
+
 		public String getReplacement(Player executor) {
-			if (EconomyBridge.hasValidEconomy()) {
-				return EconomyBridge.formatMoney(EconomyBridge.getMoney(executor));
-			} else {
+			if (!EconomyBridge.hasValidEconomy()) {
 				return "[ECONOMY PLUGIN NOT FOUND]";
 			}
+
+			if (EconomyBridge.isPrefetchEnabled()) {
+				// Never wait for the economy plugin, the icons are refreshed when the balance is known
+				Double balance = EconomyBridge.getCachedMoney(executor);
+				return balance != null ? EconomyBridge.formatMoney(balance) : ChestCommands.getLang().loading_balance;
+			}
+
+			return EconomyBridge.formatMoney(EconomyBridge.getMoney(executor));
 		}
 	},
 
-	WORLD("{world}") {
+	WORLD("{world}", false, false) {
 		public String getReplacement(Player executor) {
 			return executor.getWorld().getName();
 		}
 	};
 
 	private String text;
+	private boolean global;
+	private boolean asyncSafe;
 
-	private Variable(String text) {
+	private Variable(String text, boolean global, boolean asyncSafe) {
 		this.text = text;
+		this.global = global;
+		this.asyncSafe = asyncSafe;
 	}
 
 	public String getText() {
 		return text;
 	}
 
+	/**
+	 * Returns true if the replacement is the same for every player.
+	 */
+	public boolean isGlobal() {
+		return global;
+	}
+
+	/**
+	 * Returns true if the replacement can be calculated outside the main thread.
+	 * Only the variables that do not call the server are safe.
+	 */
+	public boolean isAsyncSafe() {
+		return asyncSafe;
+	}
+
 	public abstract String getReplacement(Player executor);
 }
@@ -1,35 +1,49 @@
 package com.gmail.filoghost.chestcommands.internal;
 
-import com.gmail.filoghost.chestcommands.bridge.PlaceholderAPIBridge;
 import org.bukkit.entity.Player;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class VariableManager {
 
+	// Strings that are not compiled in advance (for example translations) are compiled once and kept here
+	private static final int MAX_CACHED = 4096;
+	private static final Map<String, CompiledText> compiledCache = new ConcurrentHashMap<String, CompiledText>();
+
 	public static boolean hasVariables(String message) {
 		if(message == null) {
 			return false;
 		}
-		for (Variable variable : Variable.values()) {
-			if (message.contains(variable.getText())) {
-				return true;
-			}
-		}
-		if (PlaceholderAPIBridge.hasValidPlugin() && PlaceholderAPIBridge.hasPlaceholders(message)) {
-			return true;
-		}
-		return false;
+		return getCompiled(message).hasVariables();
 	}
 
+	/**
+	 * Replaces the variables of a string that was not compiled in advance.
+	 * Strings known at load time should be kept as a {@link CompiledText} instead.
+	 */
 	public static String setVariables(String message, Player executor) {
-		for (Variable variable : Variable.values()) {
-			if (message.contains(variable.getText())) {
-				message = message.replace(variable.getText(), variable.getReplacement(executor));
+		return getCompiled(message).render(executor);
+	}
+
+	private static CompiledText getCompiled(String message) {
+		CompiledText compiled = compiledCache.get(message);
+		if (compiled == null) {
+			if (compiledCache.size() >= MAX_CACHED) {
+				// Strings built at runtime should not grow the cache forever
+				compiledCache.clear();
 			}
+			compiled = CompiledText.compile(message);
+			compiledCache.put(message, compiled);
 		}
-		if (PlaceholderAPIBridge.hasValidPlugin()) {
-			message = PlaceholderAPIBridge.setPlaceholders(message, executor);
-		}
-		return message;
+		return compiled;
+	}
+
+	/**
+	 * Must be called when reloading, because the compiled strings depend on the installed plugins.
+	 */
+	public static void clearCache() {
+		compiledCache.clear();
 	}
 
 }
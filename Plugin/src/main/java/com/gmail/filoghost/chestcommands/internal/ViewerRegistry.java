@@ -0,0 +1,111 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.task.RefreshMenusTask;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the players looking at each menu, updated from the inventory events,
+ * so that refreshing menus doesn't need to look at every online player.
+ */
+public class ViewerRegistry {
+
+	private final Map<Player, MenuViewer> viewersByPlayer = Utils.newHashMap();
+	private final Map<ExtendedIconMenu, Set<MenuViewer>> viewersByMenu = Utils.newHashMap();
+	private final RefreshMenusTask refreshTask;
+
+	public ViewerRegistry(RefreshMenusTask refreshTask) {
+		this.refreshTask = refreshTask;
+	}
+
+	public MenuViewer addViewer(Player player, Inventory inventory, ExtendedIconMenu menu) {
+		removeViewer(player);
+
+		MenuViewer viewer = new MenuViewer(player, inventory, menu);
+		viewersByPlayer.put(player, viewer);
+
+		Set<MenuViewer> menuViewers = viewersByMenu.get(menu);
+		if (menuViewers == null) {
+			menuViewers = Utils.newHashSet();
+			viewersByMenu.put(menu, menuViewers);
+		}
+		menuViewers.add(viewer);
+
+		refreshTask.schedule(viewer);
+		return viewer;
+	}
+
+	public MenuViewer removeViewer(Player player) {
+		MenuViewer viewer = viewersByPlayer.remove(player);
+		if (viewer == null) {
+			return null;
+		}
+
+		viewer.close();
+
+		Set<MenuViewer> menuViewers = viewersByMenu.get(viewer.getMenu());
+		if (menuViewers != null) {
+			menuViewers.remove(viewer);
+			if (menuViewers.isEmpty()) {
+				viewersByMenu.remove(viewer.getMenu());
+			}
+		}
+		return viewer;
+	}
+
+	/**
+	 * Removes the player only if the closed inventory is the one being tracked,
+	 * since a new menu may already have been opened.
+	 */
+	public void removeViewer(Player player, Inventory inventory) {
+		MenuViewer viewer = viewersByPlayer.get(player);
+		if (viewer != null && viewer.getInventory().equals(inventory)) {
+			removeViewer(player);
+		}
+	}
+
+	public MenuViewer getViewer(Player player) {
+		return viewersByPlayer.get(player);
+	}
+
+	public Collection<MenuViewer> getViewers(ExtendedIconMenu menu) {
+		Set<MenuViewer> menuViewers = viewersByMenu.get(menu);
+		if (menuViewers == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(menuViewers);
+	}
+
+	public Set<ExtendedIconMenu> getViewedMenus() {
+		return Collections.unmodifiableSet(viewersByMenu.keySet());
+	}
+
+	public void clear() {
+		for (MenuViewer viewer : viewersByPlayer.values()) {
+			viewer.close();
+		}
+		viewersByPlayer.clear();
+		viewersByMenu.clear();
+	}
+
+}
@@ -17,15 +17,12 @@ package com.gmail.filoghost.chestcommands.internal.icon;
 import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.api.Icon;
 import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
-import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
-import com.gmail.filoghost.chestcommands.internal.MenuInventoryHolder;
 import com.gmail.filoghost.chestcommands.internal.RequiredItem;
 import com.gmail.filoghost.chestcommands.util.MaterialsRegistry;
 import com.gmail.filoghost.chestcommands.util.StringUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
 
 import java.util.List;
 
@@ -42,6 +39,8 @@ public class ExtendedIcon extends Icon {
 	private int expLevelsPrice;
 	private List<RequiredItem> requiredItems;
 
+	private int clickCooldown = -1;
+
 	public ExtendedIcon() {
 		super();
 	}
@@ -52,9 +51,9 @@ public class ExtendedIcon extends Icon {
 		}
 
 		if (permissionNegated) {
-			return !player.hasPermission(permission);
+			return !ChestCommands.getPermissionCache().hasPermission(player, permission);
 		} else {
-			return player.hasPermission(permission);
+			return ChestCommands.getPermissionCache().hasPermission(player, permission);
 		}
 	}
 
@@ -90,9 +89,9 @@ public class ExtendedIcon extends Icon {
 		}
 
 		if (viewPermissionNegated) {
-			return !player.hasPermission(viewPermission);
+			return !ChestCommands.getPermissionCache().hasPermission(player, viewPermission);
 		} else {
-			return player.hasPermission(viewPermission);
+			return ChestCommands.getPermissionCache().hasPermission(player, viewPermission);
 		}
 	}
 
@@ -134,6 +133,17 @@ public class ExtendedIcon extends Icon {
 		this.requiredItems = requiredItems;
 	}
 
+	/**
+	 * The minimum delay between two clicks in milliseconds, -1 to use the one of the menu.
+	 */
+	public int getClickCooldown() {
+		return clickCooldown;
+	}
+
+	public void setClickCooldown(int clickCooldown) {
+		this.clickCooldown = clickCooldown;
+	}
+
 	public String calculateName(Player pov) {
 		return super.calculateName(pov);
 	}
@@ -142,6 +152,14 @@ public class ExtendedIcon extends Icon {
 		return super.calculateLore(pov);
 	}
 
+	public String calculateSkullOwner(Player pov) {
+		return super.calculateSkullOwner(pov);
+	}
+
+	public ItemStack createDisplayItemstack(Player pov, String name, List<String> lore) {
+		return super.createDisplayItemstack(pov, name, lore);
+	}
+
 	@Override
 	public boolean onClick(Player player) {
 
@@ -157,14 +175,23 @@ public class ExtendedIcon extends Icon {
 		}
 
 		if (moneyPrice > 0) {
+			if (Purchase.isInProgress(player)) {
+				player.sendMessage(ChestCommands.getLang().purchase_in_progress);
+				return false;
+			}
+
 			if (!EconomyBridge.hasValidEconomy()) {
 				player.sendMessage(ChatColor.RED + "This command has a price, but Vault with a compatible economy plugin was not found. For security, the command has been blocked. Please inform the staff.");
 				return closeOnClick;
 			}
 
-			if (!EconomyBridge.hasMoney(player, moneyPrice)) {
-				player.sendMessage(ChestCommands.getLang().no_money.replace("{money}", EconomyBridge.formatMoney(moneyPrice)));
-				return closeOnClick;
+			if (ChestCommands.getSettings().async_transactions) {
+				// Only a known balance is checked here, the withdrawal in another thread is the real check
+				Double balance = EconomyBridge.getValidCachedMoney(player);
+				if (balance != null && balance < moneyPrice) {
+					player.sendMessage(ChestCommands.getLang().no_money.replace("{money}", EconomyBridge.formatMoney(moneyPrice)));
+					return closeOnClick;
+				}
 			}
 		}
 
@@ -194,14 +221,23 @@ public class ExtendedIcon extends Icon {
 
 		// Take the money and the required item
 
-		boolean changedVariables = false; // To update the placeholders
+		if (moneyPrice > 0 && ChestCommands.getSettings().async_transactions) {
+			// The actions are executed when the money has been withdrawn, keep the menu open until then
+			new Purchase(player, this, moneyPrice, expLevelsPrice, requiredItems).start();
+			return false;
+		}
 
 		if (moneyPrice > 0) {
+			if (!EconomyBridge.hasMoney(player, moneyPrice, true)) {
+				player.sendMessage(ChestCommands.getLang().no_money.replace("{money}", EconomyBridge.formatMoney(moneyPrice)));
+				return closeOnClick;
+			}
+
+			// Also refreshes the icons displaying {money}
 			if (!EconomyBridge.takeMoney(player, moneyPrice)) {
 				player.sendMessage(ChatColor.RED + "Error: the transaction couldn't be executed. Please inform the staff.");
 				return closeOnClick;
 			}
-			changedVariables = true;
 		}
 
 		if (expLevelsPrice > 0) {
@@ -214,20 +250,15 @@ public class ExtendedIcon extends Icon {
 			}
 		}
 
-		if (changedVariables) {
-			InventoryView view = player.getOpenInventory();
-			if (view != null) {
-				Inventory topInventory = view.getTopInventory();
-				if (topInventory.getHolder() instanceof MenuInventoryHolder) {
-					MenuInventoryHolder menuHolder = (MenuInventoryHolder) topInventory.getHolder();
-
-					if (menuHolder.getIconMenu() instanceof ExtendedIconMenu) {
-						((ExtendedIconMenu) menuHolder.getIconMenu()).refresh(player, topInventory);
-					}
-				}
-			}
-		}
+		return super.onClick(player);
+	}
 
+	/**
+	 * Executes the actions after the money of an asynchronous purchase has been withdrawn.
+	 *
+	 * @return true if the menu should be closed.
+	 */
+	protected boolean onPurchaseCompleted(Player player) {
 		return super.onClick(player);
 	}
 
@@ -15,21 +15,23 @@
 package com.gmail.filoghost.chestcommands.internal.icon;
 
 import com.gmail.filoghost.chestcommands.config.AsciiPlaceholders;
-import com.gmail.filoghost.chestcommands.internal.VariableManager;
+import com.gmail.filoghost.chestcommands.internal.CompiledText;
 import org.bukkit.entity.Player;
 
 public abstract class IconCommand {
 
 	protected String command;
 	protected boolean hasVariables;
+	private CompiledText compiledCommand;
 
 	public IconCommand(String command) {
 		this.command = AsciiPlaceholders.placeholdersToSymbols(command).trim();
-		this.hasVariables = VariableManager.hasVariables(command);
+		this.compiledCommand = CompiledText.compile(this.command);
+		this.hasVariables = compiledCommand.hasVariables();
 	}
 
 	public String getParsedCommand(Player executor) {
-		return hasVariables ? VariableManager.setVariables(command, executor) : command;
+		return hasVariables ? compiledCommand.render(executor) : command;
 	}
 
 	public abstract void execute(Player player);
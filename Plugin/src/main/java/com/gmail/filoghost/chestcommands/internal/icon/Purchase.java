@@ -0,0 +1,215 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal.icon;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
+import com.gmail.filoghost.chestcommands.internal.RequiredItem;
+import com.gmail.filoghost.chestcommands.internal.Variable;
+import com.gmail.filoghost.chestcommands.util.MenuUtils;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * A purchase of an icon with a price, where the money is withdrawn in another thread.
+ *
+ * The required items and XP levels are taken on the main thread before the withdrawal, and given back if it fails.
+ * Each player can have only one purchase in progress, so that clicking again cannot spend the money twice.
+ * If the player leaves before the withdrawal completes, the items and levels are given back while quitting,
+ * and the money is deposited back once withdrawn. Nothing is kept after the player has left.
+ */
+public class Purchase {
+
+	// Only accessed from the main thread
+	private static final Map<UUID, Purchase> purchasesInProgress = Utils.newHashMap();
+
+	private final Player player;
+	private final ExtendedIcon icon;
+	private final double moneyPrice;
+	private final int expLevelsPrice;
+	private final List<RequiredItem> requiredItems;
+	private final String playerName;
+	private final String world;
+
+	private final List<ItemStack> reservedItems = Utils.newArrayList();
+	private int reservedLevels;
+	private boolean interrupted;
+
+	public Purchase(Player player, ExtendedIcon icon, double moneyPrice, int expLevelsPrice, List<RequiredItem> requiredItems) {
+		this.player = player;
+		this.icon = icon;
+		this.moneyPrice = moneyPrice;
+		this.expLevelsPrice = expLevelsPrice;
+		this.requiredItems = requiredItems;
+		this.playerName = player.getName();
+		this.world = player.getWorld().getName();
+	}
+
+	public static boolean isInProgress(Player player) {
+		return purchasesInProgress.containsKey(player.getUniqueId());
+	}
+
+	/**
+	 * Gives back what was reserved by the purchase in progress, while the player can still receive it.
+	 * Called when the player quits.
+	 */
+	public static void onQuit(Player player) {
+		Purchase purchase = purchasesInProgress.get(player.getUniqueId());
+		if (purchase != null) {
+			purchase.interrupted = true;
+			purchase.rollback();
+		}
+	}
+
+	/**
+	 * Gives back what was reserved by all the purchases in progress, called when the plugin is disabled.
+	 */
+	public static void rollbackAll() {
+		for (Purchase purchase : purchasesInProgress.values()) {
+			purchase.interrupted = true;
+			purchase.rollback();
+		}
+	}
+
+	/**
+	 * Takes the items and the XP levels, then withdraws the money in another thread.
+	 * The requirements must have been already checked.
+	 */
+	public void start() {
+		purchasesInProgress.put(player.getUniqueId(), this);
+
+		if (expLevelsPrice > 0) {
+			player.setLevel(player.getLevel() - expLevelsPrice);
+			reservedLevels = expLevelsPrice;
+		}
+
+		if (requiredItems != null) {
+			for (RequiredItem item : requiredItems) {
+				item.takeItem(player, reservedItems);
+			}
+		}
+
+		Bukkit.getScheduler().runTaskAsynchronously(ChestCommands.getInstance(), new Runnable() {
+
+			@Override
+			public void run() {
+				boolean success;
+				try {
+					success = EconomyBridge.withdrawMoney(playerName, world, moneyPrice);
+				} catch (Throwable t) {
+					ChestCommands.getInstance().getLogger().log(Level.WARNING, "Could not withdraw money from " + playerName + ".", t);
+					success = false;
+				}
+
+				final boolean withdrawn = success;
+				Bukkit.getScheduler().scheduleSyncDelayedTask(ChestCommands.getInstance(), new Runnable() {
+
+					@Override
+					public void run() {
+						complete(withdrawn);
+					}
+				});
+			}
+		});
+	}
+
+	private void complete(boolean withdrawn) {
+		purchasesInProgress.remove(player.getUniqueId());
+		EconomyBridge.invalidateMoney(player);
+
+		if (!withdrawn) {
+			rollback();
+			if (player.isOnline()) {
+				player.sendMessage(ChestCommands.getLang().no_money.replace("{money}", EconomyBridge.formatMoney(moneyPrice)));
+			}
+			return;
+		}
+
+		if (interrupted || !player.isOnline()) {
+			// The items and levels were given back while quitting, even if the player joined again in the meanwhile
+			ChestCommands.getInstance().getLogger().warning(playerName + " left before the purchase of an icon was completed, the price will be given back.");
+			refundMoney();
+			rollback();
+			return;
+		}
+
+		MenuUtils.refreshMenu(player, Variable.MONEY);
+
+		try {
+			if (icon.onPurchaseCompleted(player)) {
+				player.closeInventory();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			player.sendMessage(ChatColor.RED + "An internal error occurred while executing the actions of the icon. The staff should check the console for errors.");
+		}
+	}
+
+	private void refundMoney() {
+		Bukkit.getScheduler().runTaskAsynchronously(ChestCommands.getInstance(), new Runnable() {
+
+			@Override
+			public void run() {
+				boolean success;
+				try {
+					success = EconomyBridge.depositMoney(playerName, world, moneyPrice);
+				} catch (Throwable t) {
+					ChestCommands.getInstance().getLogger().log(Level.WARNING, "Error while giving back money to " + playerName + ".", t);
+					success = false;
+				}
+
+				if (!success) {
+					ChestCommands.getInstance().getLogger().severe("Could not give back " + moneyPrice + " to " + playerName + " for an interrupted purchase, it must be given back manually.");
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gives back the items and the levels, only once.
+	 */
+	private void rollback() {
+		if (reservedLevels <= 0 && reservedItems.isEmpty()) {
+			return;
+		}
+
+		if (!player.isOnline()) {
+			// Should not happen, they are given back while the player quits
+			ChestCommands.getInstance().getLogger().severe("Could not give back " + reservedLevels + " levels and " + reservedItems + " to " + playerName + " for an interrupted purchase, they must be given back manually.");
+		} else {
+			if (reservedLevels > 0) {
+				player.setLevel(player.getLevel() + reservedLevels);
+			}
+
+			for (ItemStack item : reservedItems) {
+				for (ItemStack remaining : player.getInventory().addItem(item).values()) {
+					player.getWorld().dropItem(player.getLocation(), remaining);
+				}
+			}
+		}
+
+		reservedLevels = 0;
+		reservedItems.clear();
+	}
+
+}
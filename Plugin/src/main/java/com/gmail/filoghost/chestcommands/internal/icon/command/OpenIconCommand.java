@@ -28,11 +28,29 @@ public class OpenIconCommand extends IconCommand {
 	}
 
 	@Override
-	public void execute(final Player player) {
+	public void execute(Player player) {
+		open(player, false);
+	}
+
+	/**
+	 * Executes the command from the actions of a clicked icon, which run after the click event.
+	 * If the menu reuses the inventory that the player is looking at, it is filled right away.
+	 */
+	public void executeAfterClick(Player player) {
+		open(player, true);
+	}
+
+	private void open(final Player player, boolean afterClick) {
 		String target = hasVariables ? getParsedCommand(player) : command;
 		final ExtendedIconMenu menu = ChestCommands.getFileNameToMenuMap().get(target.toLowerCase());
 		if (menu != null) {
 
+			if (afterClick && menu.canReuseInventory(player) && player.hasPermission(menu.getPermission())) {
+				// No inventory is opened, the contents of the current one are replaced
+				menu.open(player);
+				return;
+			}
+
 			/*
 			 * Delay the task, since this command is executed in ClickInventoryEvent
 			 * and opening another inventory in the same moment is not a good idea.
@@ -15,6 +15,7 @@
 package com.gmail.filoghost.chestcommands.listener;
 
 import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.command.MenuCommandRegistry;
 import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
 import com.gmail.filoghost.chestcommands.util.StringUtils;
 import org.bukkit.event.EventHandler;
@@ -27,6 +28,13 @@ public class CommandListener implements Listener {
 	@EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
 	public void onCommand(PlayerCommandPreprocessEvent event) {
 
+		MenuCommandRegistry menuCommands = ChestCommands.getMenuCommandRegistry();
+
+		// Usually all the commands are registered in the server
+		if (!menuCommands.hasFallbackCommands()) {
+			return;
+		}
+
 		if (ChestCommands.getSettings().use_only_commands_without_args && event.getMessage().contains(" ")) {
 			return;
 		}
@@ -38,7 +46,7 @@ public class CommandListener implements Listener {
 			return;
 		}
 
-		ExtendedIconMenu menu = ChestCommands.getCommandToMenuMap().get(command);
+		ExtendedIconMenu menu = menuCommands.getFallbackMenu(command);
 
 		if (menu != null) {
 			event.setCancelled(true);
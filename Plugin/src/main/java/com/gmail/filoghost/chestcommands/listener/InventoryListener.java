@@ -17,30 +17,36 @@ package com.gmail.filoghost.chestcommands.listener;
 import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.api.Icon;
 import com.gmail.filoghost.chestcommands.api.IconMenu;
+import com.gmail.filoghost.chestcommands.bridge.EconomyBridge;
 import com.gmail.filoghost.chestcommands.internal.BoundItem;
+import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
 import com.gmail.filoghost.chestcommands.internal.MenuInventoryHolder;
-import com.gmail.filoghost.chestcommands.task.ExecuteCommandsTask;
-import com.gmail.filoghost.chestcommands.util.Utils;
-import org.bukkit.Bukkit;
+import com.gmail.filoghost.chestcommands.internal.icon.ExtendedIcon;
+import com.gmail.filoghost.chestcommands.util.CooldownTable;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.util.Map;
-
 public class InventoryListener implements Listener {
 
-	private static Map<Player, Long> antiClickSpam = Utils.newHashMap();
+	private static CooldownTable clickCooldowns = new CooldownTable();
 
 	@EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
 	public void onInteract(PlayerInteractEvent event) {
 		if (event.hasItem() && event.getAction() != Action.PHYSICAL) {
-			for (BoundItem boundItem : ChestCommands.getBoundItems()) {
+			BoundItem[] candidates = ChestCommands.getBoundItems().getCandidates(event.getItem(), event.getAction());
+			if (candidates == null) {
+				return;
+			}
+
+			for (BoundItem boundItem : candidates) {
 				if (boundItem.isValidTrigger(event.getItem(), event.getAction())) {
 					if (event.getPlayer().hasPermission(boundItem.getMenu().getPermission())) {
 						boundItem.getMenu().open(event.getPlayer());
@@ -68,28 +74,68 @@ public class InventoryListener implements Listener {
 				if (icon != null && event.getInventory().getItem(slot) != null) {
 					Player clicker = (Player) event.getWhoClicked();
 
-					Long cooldownUntil = antiClickSpam.get(clicker);
-					long now = System.currentTimeMillis();
-					int minDelay = ChestCommands.getSettings().anti_click_spam_delay;
+					Object cooldownScope = getCooldownScope(menu, icon);
+					int minDelay = getClickCooldown(cooldownScope);
 
-					if (minDelay > 0) {
-						if (cooldownUntil != null && cooldownUntil > now) {
-							return;
-						} else {
-							antiClickSpam.put(clicker, now + minDelay);
-						}
+					if (minDelay > 0 && !clickCooldowns.tryStart(clicker.getUniqueId(), cooldownScope, System.currentTimeMillis(), minDelay)) {
+						return;
 					}
 
 					// Closes the inventory and executes commands AFTER the event
-					Bukkit.getScheduler().scheduleSyncDelayedTask(ChestCommands.getInstance(), new ExecuteCommandsTask(clicker, icon));
+					ChestCommands.getClickDispatcher().dispatch(clicker, icon);
 				}
 			}
 		}
 	}
 
+	/**
+	 * The icon if it has its own cooldown, otherwise the menu if it has its own cooldown, otherwise null (shared by all the menus).
+	 * Clicks only wait for the cooldown of the same scope.
+	 */
+	private static Object getCooldownScope(IconMenu menu, Icon icon) {
+		if (icon instanceof ExtendedIcon && ((ExtendedIcon) icon).getClickCooldown() >= 0) {
+			return icon;
+		}
+		if (menu instanceof ExtendedIconMenu && ((ExtendedIconMenu) menu).getClickCooldown() >= 0) {
+			return menu;
+		}
+		return null;
+	}
+
+	private static int getClickCooldown(Object cooldownScope) {
+		if (cooldownScope instanceof ExtendedIcon) {
+			return ((ExtendedIcon) cooldownScope).getClickCooldown();
+		}
+		if (cooldownScope instanceof ExtendedIconMenu) {
+			return ((ExtendedIconMenu) cooldownScope).getClickCooldown();
+		}
+		return ChestCommands.getSettings().anti_click_spam_delay;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onInventoryOpen(InventoryOpenEvent event) {
+		if (event.getInventory().getHolder() instanceof MenuInventoryHolder && event.getPlayer() instanceof Player) {
+			IconMenu menu = ((MenuInventoryHolder) event.getInventory().getHolder()).getIconMenu();
+
+			if (menu instanceof ExtendedIconMenu) {
+				ChestCommands.getViewerRegistry().addViewer((Player) event.getPlayer(), event.getInventory(), (ExtendedIconMenu) menu);
+			}
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onInventoryClose(InventoryCloseEvent event) {
+		if (event.getInventory().getHolder() instanceof MenuInventoryHolder && event.getPlayer() instanceof Player) {
+			ChestCommands.getViewerRegistry().removeViewer((Player) event.getPlayer(), event.getInventory());
+		}
+	}
+
 	@EventHandler
 	public void onQuit(PlayerQuitEvent event) {
-		antiClickSpam.remove(event.getPlayer());
+		clickCooldowns.remove(event.getPlayer().getUniqueId());
+		ChestCommands.getViewerRegistry().removeViewer(event.getPlayer());
+		ChestCommands.getTranslationCache().invalidate(event.getPlayer());
+		EconomyBridge.invalidateMoney(event.getPlayer());
 	}
 
 }
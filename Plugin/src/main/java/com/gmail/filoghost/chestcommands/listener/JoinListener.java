@@ -16,15 +16,20 @@ package com.gmail.filoghost.chestcommands.listener;
 
 import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.Permissions;
+import com.gmail.filoghost.chestcommands.internal.CachedGetters;
+import com.gmail.filoghost.chestcommands.internal.icon.Purchase;
 import org.bukkit.ChatColor;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 public class JoinListener implements Listener {
 
 	@EventHandler
 	public void onJoin(PlayerJoinEvent event) {
+		// {online} is displayed by the next periodic refresh of the menus
+		CachedGetters.invalidateOnlinePlayers();
 
 		if (ChestCommands.getLastReloadErrors() > 0 && event.getPlayer().hasPermission(Permissions.SEE_ERRORS)) {
 			event.getPlayer().sendMessage(ChestCommands.CHAT_PREFIX + ChatColor.RED + "The plugin found " + ChestCommands.getLastReloadErrors() + " error(s) last time it was loaded. You can see them by doing \"/cc reload\" in the console.");
@@ -36,4 +41,10 @@ public class JoinListener implements Listener {
 		}
 	}
 
+	@EventHandler
+	public void onQuit(PlayerQuitEvent event) {
+		Purchase.onQuit(event.getPlayer());
+		CachedGetters.invalidateOnlinePlayers();
+	}
+
 }
@@ -18,41 +18,51 @@ import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.Permissions;
 import com.gmail.filoghost.chestcommands.api.IconMenu;
 import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
+import com.gmail.filoghost.chestcommands.internal.SignIndex;
+import com.gmail.filoghost.chestcommands.internal.SignIndex.MenuSign;
 import com.gmail.filoghost.chestcommands.util.BukkitUtils;
 import org.bukkit.ChatColor;
-import org.bukkit.block.Sign;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
 public class SignListener implements Listener {
 
 	@EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
 	public void onInteract(PlayerInteractEvent event) {
 
-		if (event.getAction() == Action.RIGHT_CLICK_BLOCK && event.hasBlock() && event.getClickedBlock().getState() instanceof Sign) {
+		if (event.getAction() != Action.RIGHT_CLICK_BLOCK || !event.hasBlock()) {
+			return;
+		}
 
-			Sign sign = (Sign) event.getClickedBlock().getState();
-			if (sign.getLine(0).equalsIgnoreCase(ChatColor.DARK_BLUE + "[menu]")) {
+		Block block = event.getClickedBlock();
+		if (!SignIndex.isSignMaterial(block.getType())) {
+			return;
+		}
 
-				sign.getLine(1);
-				ExtendedIconMenu iconMenu = ChestCommands.getFileNameToMenuMap().get(BukkitUtils.addYamlExtension(sign.getLine(1)));
-				if (iconMenu != null) {
+		MenuSign menuSign = ChestCommands.getSignIndex().getOrIndex(block);
+		if (menuSign == null) {
+			return;
+		}
 
-					if (event.getPlayer().hasPermission(iconMenu.getPermission())) {
-						iconMenu.open(event.getPlayer());
-					} else {
-						iconMenu.sendNoPermissionMessage(event.getPlayer());
-					}
+		ExtendedIconMenu iconMenu = menuSign.getMenu();
+		if (iconMenu != null) {
 
-				} else {
-					sign.setLine(0, ChatColor.RED + ChatColor.stripColor(sign.getLine(0)));
-					event.getPlayer().sendMessage(ChestCommands.getLang().menu_not_found);
-				}
+			if (event.getPlayer().hasPermission(iconMenu.getPermission())) {
+				iconMenu.open(event.getPlayer());
+			} else {
+				iconMenu.sendNoPermissionMessage(event.getPlayer());
 			}
+
+		} else {
+			event.getPlayer().sendMessage(ChestCommands.getLang().menu_not_found);
 		}
 	}
 
@@ -84,6 +94,30 @@ public class SignListener implements Listener {
 		if (event.getLine(0).equalsIgnoreCase(ChatColor.DARK_BLUE + "[menu]") && !event.getPlayer().hasPermission(Permissions.SIGN_CREATE)) {
 			event.setLine(0, ChatColor.stripColor(event.getLine(0)));
 		}
+
+		if (SignIndex.isMenuHeader(event.getLine(0))) {
+			ChestCommands.getSignIndex().add(event.getBlock(), BukkitUtils.addYamlExtension(event.getLine(1)));
+		} else {
+			ChestCommands.getSignIndex().remove(event.getBlock());
+			ChestCommands.getSignIndex().addPlain(event.getBlock());
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockBreak(BlockBreakEvent event) {
+		if (SignIndex.isSignMaterial(event.getBlock().getType())) {
+			ChestCommands.getSignIndex().remove(event.getBlock());
+		}
+	}
+
+	@EventHandler
+	public void onChunkLoad(ChunkLoadEvent event) {
+		ChestCommands.getSignIndex().validateChunk(event.getChunk());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onChunkUnload(ChunkUnloadEvent event) {
+		ChestCommands.getSignIndex().unloadChunk(event.getChunk());
 	}
 
 }
@@ -62,6 +62,7 @@ public class IconSerializer {
 		public static final String PERMISSION_MESSAGE = "PERMISSION-MESSAGE";
 		public static final String VIEW_PERMISSION = "VIEW-PERMISSION";
 		public static final String KEEP_OPEN = "KEEP-OPEN";
+		public static final String CLICK_COOLDOWN = "CLICK-COOLDOWN";
 		public static final String POSITION_X = "POSITION-X";
 		public static final String POSITION_Y = "POSITION-Y";
 	}
@@ -187,6 +188,10 @@ public class IconSerializer {
 		boolean closeOnClick = !section.getBoolean(Nodes.KEEP_OPEN);
 		icon.setCloseOnClick(closeOnClick);
 
+		if (section.isSet(Nodes.CLICK_COOLDOWN)) {
+			icon.setClickCooldown(Math.max(0, (int) (section.getDouble(Nodes.CLICK_COOLDOWN) * 1000.0)));
+		}
+
 		List<String> serializedCommands = ConfigUtil.getStringListOrInlineList(section, ChestCommands.getSettings().multiple_commands_separator, Nodes.ACTIONS);
 		
 		if (serializedCommands != null && !serializedCommands.isEmpty()) {
@@ -49,6 +49,7 @@ public class MenuSerializer {
 		public static final String OPEN_ITEM_RIGHT_CLICK = "menu-settings.open-with-item.right-click";
 
 		public static final String AUTO_REFRESH = "menu-settings.auto-refresh";
+		public static final String CLICK_COOLDOWN = "menu-settings.click-cooldown";
 
 	}
 
@@ -74,6 +75,7 @@ public class MenuSerializer {
 				errorLogger.addError("The icon \"" + subSectionName + "\" in the menu \"" + config.getFileName() + " is overriding another icon with the same position.");
 			}
 
+			icon.compileTemplate();
 			iconMenu.setIcon(coords.getX(), coords.getY(), icon);
 		}
 
@@ -161,6 +163,11 @@ public class MenuSerializer {
 			menuData.setRefreshTenths(tenthsToRefresh);
 		}
 
+		if (config.isSet(Nodes.CLICK_COOLDOWN)) {
+			// In seconds, like auto-refresh
+			menuData.setClickCooldown(Math.max(0, (int) (config.getDouble(Nodes.CLICK_COOLDOWN) * 1000.0)));
+		}
+
 		return menuData;
 	}
 
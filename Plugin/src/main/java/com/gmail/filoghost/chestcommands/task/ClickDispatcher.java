@@ -0,0 +1,69 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.task;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.api.Icon;
+import org.bukkit.entity.Player;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+/**
+ * Executes the clicks on the icons at the start of the next tick, after the click event, in the same order they happened.
+ * A single repeating task is used instead of scheduling a task for each click.
+ */
+public class ClickDispatcher implements Runnable {
+
+	private final Queue<ExecuteCommandsTask> clicks = new ConcurrentLinkedQueue<ExecuteCommandsTask>();
+
+	public void dispatch(Player player, Icon icon) {
+		clicks.offer(new ExecuteCommandsTask(player, icon));
+	}
+
+	public int getPendingClicks() {
+		return clicks.size();
+	}
+
+	@Override
+	public void run() {
+		drain(ChestCommands.getSettings().max_clicks_per_tick);
+	}
+
+	/**
+	 * Executes the pending clicks in order, up to the limit (0 = no limit).
+	 * The remaining clicks are executed in the next ticks.
+	 */
+	void drain(int limit) {
+		int executed = 0;
+
+		ExecuteCommandsTask click;
+		while ((limit <= 0 || executed < limit) && (click = clicks.poll()) != null) {
+			executed++;
+
+			if (!click.getPlayer().isOnline()) {
+				continue;
+			}
+
+			try {
+				click.run();
+			} catch (Throwable t) {
+				ChestCommands.getInstance().getLogger().log(Level.SEVERE, "Error while executing the click of " + click.getPlayer().getName(), t);
+			}
+		}
+	}
+
+}
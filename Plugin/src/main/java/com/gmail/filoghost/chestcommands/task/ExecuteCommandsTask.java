@@ -29,6 +29,11 @@ public class ExecuteCommandsTask implements Runnable {
 	}
 
 
+	public Player getPlayer() {
+		return player;
+	}
+
+
 	@Override
 	public void run() {
 		boolean close = icon.onClick(player);
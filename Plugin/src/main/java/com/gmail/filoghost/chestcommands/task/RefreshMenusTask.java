@@ -14,44 +14,110 @@
  */
 package com.gmail.filoghost.chestcommands.task;
 
-import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
-import com.gmail.filoghost.chestcommands.internal.MenuInventoryHolder;
-import com.gmail.filoghost.chestcommands.util.BukkitUtils;
-import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryView;
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.internal.MenuViewer;
+import com.gmail.filoghost.chestcommands.internal.RenderCycle;
+import com.gmail.filoghost.chestcommands.util.TimingWheel;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Runs every 2 ticks (a tenth of second). Each viewer has its own refresh deadline,
+ * so that menus with the same interval are not all refreshed in the same tick.
+ *
+ * The time spent refreshing in a single run is limited by "refresh-budget-microseconds":
+ * the viewers left are refreshed in the next runs, and while there is a backlog
+ * the refresh intervals are stretched to reduce the load.
+ */
 public class RefreshMenusTask implements Runnable {
 
-	private long elapsedTenths;
+	private static final double MAX_STRETCH = 4.0;
+	private static final double STRETCH_INCREMENT = 0.25;
+	private static final double STRETCH_DECREMENT = 0.05;
+
+	private final TimingWheel<MenuViewer> timingWheel = new TimingWheel<MenuViewer>();
+	private final Queue<MenuViewer> pendingViewers = new ArrayDeque<MenuViewer>();
+	private long nextPhase;
+	private double stretch = 1.0;
+
+	// Null if the refreshes are calculated only on the main thread
+	private RefreshWorker worker;
+
+	/**
+	 * Starts refreshing the menu of a viewer periodically, if it has auto-refresh.
+	 * The first refresh is shifted by a different phase for each viewer, to spread the work evenly.
+	 */
+	public void schedule(MenuViewer viewer) {
+		int refreshTenths = viewer.getMenu().getRefreshTicks();
+		if (refreshTenths <= 0) {
+			return;
+		}
+
+		long phase = nextPhase++ % refreshTenths;
+		viewer.setRefreshTimeout(timingWheel.schedule(viewer, 1 + phase));
+	}
 
 	@Override
 	public void run() {
+		if (worker != null) {
+			// The icons calculated in the meanwhile by the worker, applied all together
+			worker.applyResults();
+		}
+
+		RenderCycle.next();
+		timingWheel.advance(pendingViewers);
 
-		for (Player player : BukkitUtils.getOnlinePlayers()) {
+		long budgetNanos = ChestCommands.getSettings().refresh_budget_microseconds * 1000L;
+		long start = System.nanoTime();
 
-			InventoryView view = player.getOpenInventory();
-			if (view == null) {
-				return;
+		MenuViewer viewer;
+		while ((viewer = pendingViewers.poll()) != null) {
+			if (viewer.isClosed()) {
+				continue;
 			}
 
-			Inventory topInventory = view.getTopInventory();
-			if (topInventory.getHolder() instanceof MenuInventoryHolder) {
-				MenuInventoryHolder menuHolder = (MenuInventoryHolder) topInventory.getHolder();
+			if (worker != null) {
+				viewer.refresh(worker);
+			} else {
+				viewer.refresh();
+			}
 
-				if (menuHolder.getIconMenu() instanceof ExtendedIconMenu) {
-					ExtendedIconMenu extMenu = (ExtendedIconMenu) menuHolder.getIconMenu();
+			if (!viewer.isClosed()) {
+				// Rescheduled from now, so a late refresh also delays the next one
+				long delay = (long) Math.ceil(viewer.getMenu().getRefreshTicks() * stretch);
+				viewer.setRefreshTimeout(timingWheel.schedule(viewer, delay));
+			}
 
-					if (extMenu.getRefreshTicks() > 0) {
-						if (elapsedTenths % extMenu.getRefreshTicks() == 0) {
-							extMenu.refresh(player, topInventory);
-						}
-					}
-				}
+			if (budgetNanos > 0 && System.nanoTime() - start >= budgetNanos) {
+				break;
 			}
 		}
 
-		elapsedTenths++;
+		if (!pendingViewers.isEmpty()) {
+			// Over budget: the rest is carried to the next run, refresh less often meanwhile
+			stretch = Math.min(MAX_STRETCH, stretch + STRETCH_INCREMENT);
+		} else if (stretch > 1.0) {
+			stretch = Math.max(1.0, stretch - STRETCH_DECREMENT);
+		}
+	}
+
+	public void setWorker(RefreshWorker worker) {
+		if (this.worker != null) {
+			this.worker.shutdown();
+		}
+		this.worker = worker;
+	}
+
+	/**
+	 * Returns how much the refresh intervals are currently being stretched because of the load.
+	 */
+	public double getStretch() {
+		return stretch;
+	}
+
+	public int getPendingViewers() {
+		return pendingViewers.size();
 	}
 
 }
@@ -0,0 +1,136 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.task;
+
+import com.gmail.filoghost.chestcommands.ChestCommands;
+import com.gmail.filoghost.chestcommands.internal.MenuViewer;
+import com.gmail.filoghost.chestcommands.internal.icon.ExtendedIcon;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Calculates the name and the lore of the icons that only contain thread-safe variables on a pool of threads.
+ * The results are collected and displayed on the main thread at the start of the next run of RefreshMenusTask.
+ */
+public class RefreshWorker {
+
+	private final ExecutorService executor;
+	private final Queue<Result> results = new ConcurrentLinkedQueue<Result>();
+
+	public RefreshWorker(int threads) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ChestCommands refresh worker #" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Must be called from the main thread, the icons are read immediately.
+	 */
+	public void submit(final MenuViewer viewer, List<Integer> slots) {
+		final Player player = viewer.getPlayer();
+		final int[] slotsArray = new int[slots.size()];
+		final ExtendedIcon[] icons = new ExtendedIcon[slots.size()];
+
+		for (int i = 0; i < slotsArray.length; i++) {
+			slotsArray[i] = slots.get(i);
+			icons[i] = (ExtendedIcon) viewer.getMenu().getIconRaw(slotsArray[i]);
+		}
+
+		viewer.setAsyncRefreshPending(true);
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				String[] names = new String[icons.length];
+				@SuppressWarnings("unchecked")
+				List<String>[] lores = new List[icons.length];
+				int calculated = 0;
+
+				try {
+					for (; calculated < icons.length; calculated++) {
+						names[calculated] = icons[calculated].calculateName(player);
+						lores[calculated] = icons[calculated].calculateLore(player);
+					}
+				} catch (Throwable t) {
+					ChestCommands.getInstance().getLogger().log(Level.WARNING, "Error while refreshing a menu in another thread.", t);
+				} finally {
+					// Always sent back, even if empty, so that the viewer can be refreshed again
+					results.add(new Result(viewer, slotsArray, icons, names, lores, calculated));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Displays all the results calculated so far. Must be called from the main thread.
+	 */
+	public void applyResults() {
+		Result result;
+		while ((result = results.poll()) != null) {
+			MenuViewer viewer = result.viewer;
+			viewer.setAsyncRefreshPending(false);
+
+			if (viewer.isClosed()) {
+				continue;
+			}
+
+			for (int i = 0; i < result.calculated; i++) {
+				viewer.getMenu().applyRefresh(viewer.getPlayer(), viewer.getInventory(), result.slots[i], result.icons[i], result.names[i], result.lores[i]);
+			}
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+		results.clear();
+	}
+
+
+	private static class Result {
+
+		private final MenuViewer viewer;
+		private final int[] slots;
+		private final ExtendedIcon[] icons;
+		private final String[] names;
+		private final List<String>[] lores;
+		private final int calculated;
+
+		private Result(MenuViewer viewer, int[] slots, ExtendedIcon[] icons, String[] names, List<String>[] lores, int calculated) {
+			this.viewer = viewer;
+			this.slots = slots;
+			this.icons = icons;
+			this.names = names;
+			this.lores = lores;
+			this.calculated = calculated;
+		}
+	}
+
+}
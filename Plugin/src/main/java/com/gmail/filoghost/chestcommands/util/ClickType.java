@@ -18,9 +18,19 @@ import org.bukkit.event.block.Action;
 
 public enum ClickType {
 
-	LEFT,
-	RIGHT,
-	BOTH;
+	LEFT(1),
+	RIGHT(2),
+	BOTH(3);
+
+	private final int mask;
+
+	private ClickType(int mask) {
+		this.mask = mask;
+	}
+
+	public int getMask() {
+		return mask;
+	}
 
 	public static ClickType fromOptions(boolean left, boolean right) {
 		if (left && right) {
@@ -34,14 +44,21 @@ public enum ClickType {
 		}
 	}
 
-	public boolean isValidInteract(Action action) {
+	/**
+	 * Returns the mask of the click types that are triggered by an action, 0 if none.
+	 */
+	public static int getMask(Action action) {
 		if (action == Action.LEFT_CLICK_AIR || action == Action.LEFT_CLICK_BLOCK) {
-			return this == LEFT || this == BOTH;
+			return LEFT.mask;
 		} else if (action == Action.RIGHT_CLICK_AIR || action == Action.RIGHT_CLICK_BLOCK) {
-			return this == RIGHT || this == BOTH;
+			return RIGHT.mask;
 		} else {
-			return false;
+			return 0;
 		}
 	}
 
+	public boolean isValidInteract(Action action) {
+		return (mask & getMask(action)) != 0;
+	}
+
 }
@@ -0,0 +1,184 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.util;
+
+import java.util.UUID;
+
+/**
+ * Cooldowns of players, stored in primitive arrays with open addressing (linear probing),
+ * so that checking and starting a cooldown doesn't create objects.
+ *
+ * Each player has a separate cooldown for each scope (for example an icon or a menu), compared by identity.
+ * The null scope is a valid scope too.
+ *
+ * Expired cooldowns are removed periodically, and the arrays shrink again when they're no longer needed.
+ * Not thread-safe, must be used from the main thread.
+ */
+public class CooldownTable {
+
+	private static final int MIN_CAPACITY = 16;
+	private static final long SWEEP_INTERVAL = 60000;
+
+	private long[] mostSigBits;
+	private long[] leastSigBits;
+	private Object[] scopes;
+	private long[] deadlines; // 0 = empty slot
+	private int size;
+
+	private long nextSweep;
+
+	public CooldownTable() {
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Starts the cooldown and returns true if the previous one in the same scope is over, otherwise returns false.
+	 */
+	public boolean tryStart(UUID id, Object scope, long now, long duration) {
+		if (now >= nextSweep) {
+			sweep(now);
+		}
+
+		long msb = id.getMostSignificantBits();
+		long lsb = id.getLeastSignificantBits();
+		int index = indexOf(msb, lsb, scope);
+
+		if (index >= 0) {
+			if (deadlines[index] > now) {
+				return false;
+			}
+			deadlines[index] = now + duration;
+			return true;
+		}
+
+		// Max load factor of 0.75
+		if ((size + 1) * 4 > deadlines.length * 3) {
+			rehash(now, null);
+		}
+
+		insert(msb, lsb, scope, now + duration);
+		return true;
+	}
+
+	/**
+	 * Removes the cooldowns of a player in every scope.
+	 */
+	public void remove(UUID id) {
+		if (size > 0) {
+			rehash(0, id);
+		}
+	}
+
+	/**
+	 * Removes the expired cooldowns.
+	 */
+	public void sweep(long now) {
+		nextSweep = now + SWEEP_INTERVAL;
+		if (size > 0) {
+			rehash(now, null);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	int capacity() {
+		return deadlines.length;
+	}
+
+	private int indexOf(long msb, long lsb, Object scope) {
+		int mask = deadlines.length - 1;
+		int index = hash(msb, lsb, scope) & mask;
+
+		while (deadlines[index] != 0) {
+			if (mostSigBits[index] == msb && leastSigBits[index] == lsb && scopes[index] == scope) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	private void insert(long msb, long lsb, Object scope, long deadline) {
+		int mask = deadlines.length - 1;
+		int index = hash(msb, lsb, scope) & mask;
+
+		while (deadlines[index] != 0) {
+			index = (index + 1) & mask;
+		}
+
+		mostSigBits[index] = msb;
+		leastSigBits[index] = lsb;
+		scopes[index] = scope;
+		deadlines[index] = deadline;
+		size++;
+	}
+
+	/**
+	 * Copies the cooldowns still active at the given time to new arrays, with a load factor of at most 0.5 after the next insertion.
+	 *
+	 * @param excluded a player whose cooldowns are not copied, or null
+	 */
+	private void rehash(long now, UUID excluded) {
+		long[] oldMostSigBits = mostSigBits;
+		long[] oldLeastSigBits = leastSigBits;
+		Object[] oldScopes = scopes;
+		long[] oldDeadlines = deadlines;
+
+		int active = 0;
+		for (int i = 0; i < oldDeadlines.length; i++) {
+			if (isKept(oldMostSigBits, oldLeastSigBits, oldDeadlines, i, now, excluded)) {
+				active++;
+			}
+		}
+
+		int capacity = MIN_CAPACITY;
+		while (capacity < (active + 1) * 2) {
+			capacity <<= 1;
+		}
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldDeadlines.length; i++) {
+			if (isKept(oldMostSigBits, oldLeastSigBits, oldDeadlines, i, now, excluded)) {
+				insert(oldMostSigBits[i], oldLeastSigBits[i], oldScopes[i], oldDeadlines[i]);
+			}
+		}
+	}
+
+	private static boolean isKept(long[] mostSigBits, long[] leastSigBits, long[] deadlines, int index, long now, UUID excluded) {
+		if (deadlines[index] <= now) {
+			return false; // Empty or expired
+		}
+		return excluded == null || mostSigBits[index] != excluded.getMostSignificantBits() || leastSigBits[index] != excluded.getLeastSignificantBits();
+	}
+
+	private void allocate(int capacity) {
+		mostSigBits = new long[capacity];
+		leastSigBits = new long[capacity];
+		scopes = new Object[capacity];
+		deadlines = new long[capacity];
+		size = 0;
+	}
+
+	private static int hash(long msb, long lsb, Object scope) {
+		long hash = msb ^ lsb;
+		int h = ((int) (hash ^ (hash >>> 32)) + 31 * System.identityHashCode(scope)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
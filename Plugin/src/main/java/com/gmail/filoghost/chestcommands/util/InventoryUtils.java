@@ -19,8 +19,47 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Arrays;
+
 public class InventoryUtils {
 
+	// For each thread, a buffer for each possible number of rows of a chest
+	private static final ThreadLocal<ItemStack[][]> CONTENTS_BUFFERS = new ThreadLocal<ItemStack[][]>() {
+		@Override
+		protected ItemStack[][] initialValue() {
+			return new ItemStack[7][];
+		}
+	};
+
+	/**
+	 * Returns an empty array to fill with the items of an inventory, reused by the same thread.
+	 * It must be passed to {@link #setContents(Inventory, ItemStack[])} before requesting another one.
+	 */
+	public static ItemStack[] getContentsBuffer(int size) {
+		if (size % 9 != 0 || size / 9 >= 7) {
+			return new ItemStack[size];
+		}
+
+		ItemStack[][] buffers = CONTENTS_BUFFERS.get();
+		ItemStack[] buffer = buffers[size / 9];
+		if (buffer == null) {
+			buffer = new ItemStack[size];
+			buffers[size / 9] = buffer;
+		} else {
+			// In case the previous user failed before setting the contents
+			Arrays.fill(buffer, null);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Fills the inventory with a single call, then empties the buffer so that it doesn't keep references to the items.
+	 */
+	public static void setContents(Inventory inventory, ItemStack[] buffer) {
+		inventory.setContents(buffer);
+		Arrays.fill(buffer, null);
+	}
+
 	public static boolean hasInventoryFull(Player player) {
 		return player.getInventory().firstEmpty() == -1;
 	}
@@ -23,7 +23,9 @@ import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,16 +34,15 @@ public final class ItemUtils {
 	private static final boolean USE_ITEM_FLAGS_API;
 	private static final boolean USE_ITEM_FLAGS_REFLECTION;
 
-	// Reflection stuff
-	private static Class<?> nbtTagCompoundClass;
-	private static Class<?> nbtTagListClass;
-	private static Class<?> nmsItemstackClass;
-	private static Method asNmsCopyMethod;
-	private static Method asCraftMirrorMethod;
-	private static Method hasTagMethod;
-	private static Method getTagMethod;
-	private static Method setTagMethod;
-	private static Method nbtSetMethod;
+	// Reflection stuff, looked up once and adapted to generic types to be called with invokeExact
+	private static MethodHandle newNbtTagCompound;
+	private static MethodHandle newNbtTagList;
+	private static MethodHandle asNmsCopyMethod;
+	private static MethodHandle asCraftMirrorMethod;
+	private static MethodHandle hasTagMethod;
+	private static MethodHandle getTagMethod;
+	private static MethodHandle setTagMethod;
+	private static MethodHandle nbtSetMethod;
 
 	static  {
 		if (Utils.isClassLoaded("org.bukkit.inventory.ItemFlag")) {
@@ -54,18 +55,32 @@ public final class ItemUtils {
 			// Try to get the NMS methods and classes
 			boolean success;
 			try {
-				nbtTagCompoundClass = NMSUtils.getNMSClass("NBTTagCompound");
-				nbtTagListClass = NMSUtils.getNMSClass("NBTTagList");
-				nmsItemstackClass = NMSUtils.getNMSClass("ItemStack");
+				Class<?> nbtTagCompoundClass = NMSUtils.getNMSClass("NBTTagCompound");
+				Class<?> nbtTagListClass = NMSUtils.getNMSClass("NBTTagList");
+				Class<?> nmsItemstackClass = NMSUtils.getNMSClass("ItemStack");
+				Class<?> craftItemstackClass = NMSUtils.getCraftBukkitClass("inventory.CraftItemStack");
 
-				asNmsCopyMethod = NMSUtils.getCraftBukkitClass("inventory.CraftItemStack").getMethod("asNMSCopy", ItemStack.class);
-				asCraftMirrorMethod = NMSUtils.getCraftBukkitClass("inventory.CraftItemStack").getMethod("asCraftMirror", nmsItemstackClass);
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
 
-				hasTagMethod = nmsItemstackClass.getMethod("hasTag");
-				getTagMethod = nmsItemstackClass.getMethod("getTag");
-				setTagMethod = nmsItemstackClass.getMethod("setTag", nbtTagCompoundClass);
+				newNbtTagCompound = lookup.findConstructor(nbtTagCompoundClass, MethodType.methodType(void.class))
+						.asType(MethodType.methodType(Object.class));
+				newNbtTagList = lookup.findConstructor(nbtTagListClass, MethodType.methodType(void.class))
+						.asType(MethodType.methodType(Object.class));
 
-				nbtSetMethod = nbtTagCompoundClass.getMethod("set", String.class, NMSUtils.getNMSClass("NBTBase"));
+				asNmsCopyMethod = lookup.unreflect(craftItemstackClass.getMethod("asNMSCopy", ItemStack.class))
+						.asType(MethodType.methodType(Object.class, ItemStack.class));
+				asCraftMirrorMethod = lookup.unreflect(craftItemstackClass.getMethod("asCraftMirror", nmsItemstackClass))
+						.asType(MethodType.methodType(ItemStack.class, Object.class));
+
+				hasTagMethod = lookup.unreflect(nmsItemstackClass.getMethod("hasTag"))
+						.asType(MethodType.methodType(boolean.class, Object.class));
+				getTagMethod = lookup.unreflect(nmsItemstackClass.getMethod("getTag"))
+						.asType(MethodType.methodType(Object.class, Object.class));
+				setTagMethod = lookup.unreflect(nmsItemstackClass.getMethod("setTag", nbtTagCompoundClass))
+						.asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+				nbtSetMethod = lookup.unreflect(nbtTagCompoundClass.getMethod("set", String.class, NMSUtils.getNMSClass("NBTBase")))
+						.asType(MethodType.methodType(void.class, Object.class, String.class, Object.class));
 
 				success = true;
 			} catch (Exception e) {
@@ -80,6 +95,10 @@ public final class ItemUtils {
 	private ItemUtils() {
 	}
 
+	/**
+	 * Hides the attributes of the item. Icons call this only once when building their base item,
+	 * the copies of it already have the attributes hidden.
+	 */
 	public static ItemStack hideAttributes(ItemStack item) {
 		if (item == null) {
 			return null;
@@ -97,26 +116,26 @@ public final class ItemUtils {
 		} else if (USE_ITEM_FLAGS_REFLECTION) {
 			try {
 
-				Object nmsItemstack = asNmsCopyMethod.invoke(null, item);
+				Object nmsItemstack = (Object) asNmsCopyMethod.invokeExact(item);
 				if (nmsItemstack == null) {
 					return item;
 				}
 
 				Object nbtCompound;
-				if ((Boolean) hasTagMethod.invoke(nmsItemstack)) {
-					nbtCompound = getTagMethod.invoke(nmsItemstack);
+				if ((boolean) hasTagMethod.invokeExact(nmsItemstack)) {
+					nbtCompound = (Object) getTagMethod.invokeExact(nmsItemstack);
 				} else {
-					nbtCompound = nbtTagCompoundClass.newInstance();
-					setTagMethod.invoke(nmsItemstack, nbtCompound);
+					nbtCompound = (Object) newNbtTagCompound.invokeExact();
+					setTagMethod.invokeExact(nmsItemstack, nbtCompound);
 				}
 
 				if (nbtCompound == null) {
 					return item;
 				}
 
-				Object nbtList = nbtTagListClass.newInstance();
-				nbtSetMethod.invoke(nbtCompound, "AttributeModifiers", nbtList);
-				return (ItemStack) asCraftMirrorMethod.invoke(null, nmsItemstack);
+				Object nbtList = (Object) newNbtTagList.invokeExact();
+				nbtSetMethod.invokeExact(nbtCompound, "AttributeModifiers", nbtList);
+				return (ItemStack) asCraftMirrorMethod.invokeExact(nmsItemstack);
 
 			} catch (Throwable t) {
 				// Ignore
@@ -1,10 +1,12 @@
 package com.gmail.filoghost.chestcommands.util;
 
+import com.gmail.filoghost.chestcommands.ChestCommands;
 import com.gmail.filoghost.chestcommands.internal.ExtendedIconMenu;
-import com.gmail.filoghost.chestcommands.internal.MenuInventoryHolder;
+import com.gmail.filoghost.chestcommands.internal.MenuViewer;
+import com.gmail.filoghost.chestcommands.internal.Variable;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryView;
+
+import java.util.List;
 
 public final class MenuUtils {
 
@@ -12,16 +14,59 @@ public final class MenuUtils {
 	}
 
 	public static void refreshMenu(Player player) {
-		InventoryView view = player.getOpenInventory();
-		if (view != null) {
-			Inventory topInventory = view.getTopInventory();
-			if (topInventory.getHolder() instanceof MenuInventoryHolder) {
-				MenuInventoryHolder menuHolder = (MenuInventoryHolder) topInventory.getHolder();
-
-				if (menuHolder.getIconMenu() instanceof ExtendedIconMenu) {
-					((ExtendedIconMenu) menuHolder.getIconMenu()).refresh(player, topInventory);
-				}
-			}
+		MenuViewer viewer = ChestCommands.getViewerRegistry().getViewer(player);
+		if (viewer != null) {
+			viewer.refresh();
+		}
+	}
+
+	/**
+	 * Refreshes only the icons that display the variable, in the menu the player is looking at.
+	 */
+	public static void refreshMenu(Player player, Variable changedVariable) {
+		MenuViewer viewer = ChestCommands.getViewerRegistry().getViewer(player);
+		if (viewer != null) {
+			viewer.refresh(changedVariable);
+		}
+	}
+
+	/**
+	 * Refreshes only the icons that display a placeholder of PlaceholderAPI with the given identifier,
+	 * in the menu the player is looking at.
+	 */
+	public static void refreshMenu(Player player, String changedPlaceholder) {
+		MenuViewer viewer = ChestCommands.getViewerRegistry().getViewer(player);
+		if (viewer != null) {
+			viewer.refresh(changedPlaceholder);
+		}
+	}
+
+	/**
+	 * Refreshes the icons that display a placeholder of PlaceholderAPI with the given identifier, for every viewer.
+	 */
+	public static void refreshAllMenus(String changedPlaceholder) {
+		for (MenuViewer viewer : getAllViewers()) {
+			viewer.refresh(changedPlaceholder);
+		}
+	}
+
+	/**
+	 * Updates the icons displaying the head of a player, after its texture has been resolved.
+	 */
+	public static void refreshSkulls(String owner) {
+		for (ExtendedIconMenu menu : ChestCommands.getFileNameToMenuMap().values()) {
+			menu.onSkullResolved(owner);
+		}
+		for (MenuViewer viewer : getAllViewers()) {
+			viewer.getMenu().refreshSkulls(viewer.getPlayer(), viewer.getInventory(), owner);
+		}
+	}
+
+	private static List<MenuViewer> getAllViewers() {
+		List<MenuViewer> viewers = Utils.newArrayList();
+		for (ExtendedIconMenu menu : ChestCommands.getViewerRegistry().getViewedMenus()) {
+			viewers.addAll(ChestCommands.getViewerRegistry().getViewers(menu));
 		}
+		return viewers;
 	}
 }
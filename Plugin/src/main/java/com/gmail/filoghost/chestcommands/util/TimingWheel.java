@@ -0,0 +1,150 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel: scheduling, cancelling and advancing are O(1),
+ * and the cost of a tick only depends on the tasks expiring in that tick.
+ *
+ * Each level has 64 buckets, a bucket of level n spans 64^n ticks.
+ * When the lower level completes a revolution, the next bucket of the upper level
+ * is cascaded down into more precise buckets.
+ */
+public class TimingWheel<T> {
+
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	private static final long MAX_DELAY = (1L << (BITS * LEVELS)) - 1;
+
+	private final List<List<Timeout<T>>> buckets;
+	private long currentTick;
+
+	public TimingWheel() {
+		buckets = new ArrayList<List<Timeout<T>>>(LEVELS * SLOTS);
+		for (int i = 0; i < LEVELS * SLOTS; i++) {
+			buckets.add(new ArrayList<Timeout<T>>());
+		}
+	}
+
+	/**
+	 * Schedules a task to be returned after the given amount of ticks (at least 1).
+	 */
+	public Timeout<T> schedule(T task, long delay) {
+		if (delay < 1) {
+			delay = 1;
+		} else if (delay > MAX_DELAY) {
+			delay = MAX_DELAY;
+		}
+
+		Timeout<T> timeout = new Timeout<T>(task, currentTick + delay);
+		place(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Moves forward by one tick, adding the tasks that expired to the output.
+	 */
+	public void advance(Collection<? super T> output) {
+		currentTick++;
+
+		// Cascade the upper levels that completed a revolution of the level below
+		long tick = currentTick;
+		for (int level = 1; level < LEVELS && (tick & MASK) == 0; level++) {
+			tick >>>= BITS;
+			cascade(bucket(level, (int) (tick & MASK)));
+		}
+
+		List<Timeout<T>> expired = bucket(0, (int) (currentTick & MASK));
+		for (int i = 0; i < expired.size(); i++) {
+			Timeout<T> timeout = expired.get(i);
+			if (!timeout.cancelled) {
+				output.add(timeout.task);
+			}
+		}
+		expired.clear();
+	}
+
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	private void cascade(List<Timeout<T>> bucket) {
+		if (bucket.isEmpty()) {
+			return;
+		}
+
+		List<Timeout<T>> timeouts = new ArrayList<Timeout<T>>(bucket);
+		bucket.clear();
+		for (Timeout<T> timeout : timeouts) {
+			if (!timeout.cancelled) {
+				place(timeout);
+			}
+		}
+	}
+
+	private void place(Timeout<T> timeout) {
+		long remaining = timeout.deadline - currentTick;
+
+		int level = 0;
+		while (level < LEVELS - 1 && remaining >= (1L << (BITS * (level + 1)))) {
+			level++;
+		}
+
+		bucket(level, (int) ((timeout.deadline >>> (BITS * level)) & MASK)).add(timeout);
+	}
+
+	private List<Timeout<T>> bucket(int level, int index) {
+		return buckets.get(level * SLOTS + index);
+	}
+
+
+	public static class Timeout<T> {
+
+		private final T task;
+		private final long deadline;
+		private boolean cancelled;
+
+		private Timeout(T task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		public T getTask() {
+			return task;
+		}
+
+		public long getDeadline() {
+			return deadline;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * The task will not be returned anymore, it is removed lazily.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import com.gmail.filoghost.chestcommands.util.ClickType;
+import org.bukkit.Material;
+import org.bukkit.event.block.Action;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundItemIndexTest {
+
+	@Test
+	public void groupsByMaterial() {
+		BoundItemIndex index = new BoundItemIndex();
+		BoundItem compass = new BoundItem(null, Material.COMPASS, ClickType.RIGHT);
+		BoundItem otherCompass = new BoundItem(null, Material.COMPASS, ClickType.BOTH);
+		BoundItem book = new BoundItem(null, Material.BOOK, ClickType.RIGHT);
+		index.add(compass);
+		index.add(otherCompass);
+		index.add(book);
+
+		assertEquals(3, index.size());
+		assertArrayEquals(new BoundItem[] {compass, otherCompass}, index.getCandidates(new ItemStack(Material.COMPASS), Action.RIGHT_CLICK_AIR));
+		assertArrayEquals(new BoundItem[] {book}, index.getCandidates(new ItemStack(Material.BOOK), Action.RIGHT_CLICK_BLOCK));
+		assertNull(index.getCandidates(new ItemStack(Material.STONE), Action.RIGHT_CLICK_AIR));
+		assertNull(index.getCandidates(null, Action.RIGHT_CLICK_AIR));
+	}
+
+	@Test
+	public void skipsMaterialsWithoutTheClickType() {
+		BoundItemIndex index = new BoundItemIndex();
+		index.add(new BoundItem(null, Material.COMPASS, ClickType.RIGHT));
+		index.add(new BoundItem(null, Material.BOOK, ClickType.LEFT));
+
+		assertNull(index.getCandidates(new ItemStack(Material.COMPASS), Action.LEFT_CLICK_AIR));
+		assertNull(index.getCandidates(new ItemStack(Material.COMPASS), Action.PHYSICAL));
+		assertEquals(1, index.getCandidates(new ItemStack(Material.BOOK), Action.LEFT_CLICK_BLOCK).length);
+		assertNull(index.getCandidates(new ItemStack(Material.BOOK), Action.RIGHT_CLICK_BLOCK));
+	}
+
+	@Test
+	public void clear() {
+		BoundItemIndex index = new BoundItemIndex();
+		index.add(new BoundItem(null, Material.COMPASS, ClickType.BOTH));
+		index.clear();
+
+		assertEquals(0, index.size());
+		assertNull(index.getCandidates(new ItemStack(Material.COMPASS), Action.RIGHT_CLICK_AIR));
+	}
+
+}
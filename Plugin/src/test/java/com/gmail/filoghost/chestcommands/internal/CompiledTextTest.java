@@ -0,0 +1,107 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledTextTest {
+
+	@Test
+	public void placeholderWithParams() {
+		CompiledText text = CompiledText.compile("Balance: %vault_eco_balance%", true);
+
+		assertTrue(text.hasVariables());
+		assertEquals(Collections.singleton("vault"), text.getPlaceholderIdentifiers());
+	}
+
+	@Test
+	public void placeholderWithoutUnderscore() {
+		CompiledText text = CompiledText.compile("Hello %player%", true);
+
+		assertTrue(text.hasVariables());
+		assertEquals(Collections.singleton("player"), text.getPlaceholderIdentifiers());
+	}
+
+	@Test
+	public void strayPercentBeforePlaceholder() {
+		CompiledText text = CompiledText.compile("50% off %vault_eco_balance%", true);
+
+		assertTrue(text.hasVariables());
+		assertEquals(Collections.singleton("vault"), text.getPlaceholderIdentifiers());
+	}
+
+	@Test
+	public void doublePercentBeforePlaceholder() {
+		CompiledText text = CompiledText.compile("100%%server_online%", true);
+
+		assertEquals(Collections.singleton("server"), text.getPlaceholderIdentifiers());
+	}
+
+	@Test
+	public void noPlaceholders() {
+		assertFalse(CompiledText.compile("%%", true).hasVariables());
+		assertFalse(CompiledText.compile("50% off", true).hasVariables());
+		assertFalse(CompiledText.compile("%unclosed_placeholder", true).hasVariables());
+		assertFalse(CompiledText.compile("", true).hasVariables());
+	}
+
+	@Test
+	public void placeholdersDisabled() {
+		CompiledText text = CompiledText.compile("%vault_eco_balance%", false);
+
+		assertFalse(text.hasVariables());
+		assertEquals("%vault_eco_balance%", text.render(null));
+	}
+
+	@Test
+	public void variablesAndPlaceholders() {
+		CompiledText text = CompiledText.compile("{player} in {world}: %vault_eco_balance%", true);
+
+		assertTrue(text.dependsOn(Variable.PLAYER));
+		assertTrue(text.dependsOn(Variable.WORLD));
+		assertFalse(text.dependsOn(Variable.ONLINE));
+		assertTrue(text.dependsOnPlaceholder("VAULT"));
+		assertFalse(text.isGlobal());
+	}
+
+	@Test
+	public void globalVariables() {
+		assertTrue(CompiledText.compile("{online}/{max_players}", true).isGlobal());
+	}
+
+	@Test
+	public void asyncSafety() {
+		assertTrue(CompiledText.compile("{player}", true).isAsyncSafe());
+		assertFalse(CompiledText.compile("{player} {online}", true).isAsyncSafe());
+		assertFalse(CompiledText.compile("{world}", true).isAsyncSafe());
+		assertFalse(CompiledText.compile("{player} %server_tps%", true).isAsyncSafe());
+	}
+
+	@Test
+	public void placeholderEnd() {
+		assertEquals(6, CompiledText.findPlaceholderEnd("%a_b c%", 0));
+		assertEquals(-1, CompiledText.findPlaceholderEnd("% off %", 0));
+		assertEquals(-1, CompiledText.findPlaceholderEnd("%%", 0));
+		assertEquals(-1, CompiledText.findPlaceholderEnd("%abc", 0));
+		assertEquals(-1, CompiledText.findPlaceholderEnd("abc%", 0));
+	}
+
+}
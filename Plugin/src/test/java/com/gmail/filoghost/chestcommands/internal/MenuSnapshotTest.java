@@ -0,0 +1,69 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.internal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MenuSnapshotTest {
+
+	@Test
+	public void unknownSlotsNeverMatch() {
+		MenuSnapshot snapshot = new MenuSnapshot(9);
+
+		assertFalse(snapshot.isShown(0));
+		assertFalse(snapshot.isHidden(0));
+		assertFalse(snapshot.matches(0, null, null));
+	}
+
+	@Test
+	public void matchesTheDisplayedOutput() {
+		MenuSnapshot snapshot = new MenuSnapshot(9);
+		List<String> lore = Arrays.asList("first", "second");
+		snapshot.setShown(3, "name", lore);
+
+		assertTrue(snapshot.isShown(3));
+		assertTrue(snapshot.matches(3, "name", Arrays.asList("first", "second")));
+		assertFalse(snapshot.matches(3, "other", lore));
+		assertFalse(snapshot.matches(3, "name", Arrays.asList("first")));
+		assertFalse(snapshot.matches(3, "name", null));
+	}
+
+	@Test
+	public void nullNameAndLoreMatch() {
+		MenuSnapshot snapshot = new MenuSnapshot(9);
+		snapshot.setShown(0, null, null);
+
+		assertTrue(snapshot.matches(0, null, null));
+		assertFalse(snapshot.matches(0, "name", null));
+	}
+
+	@Test
+	public void hiddenSlotsNeverMatch() {
+		MenuSnapshot snapshot = new MenuSnapshot(9);
+		snapshot.setShown(5, "name", null);
+		snapshot.setHidden(5);
+
+		assertTrue(snapshot.isHidden(5));
+		assertFalse(snapshot.isShown(5));
+		assertFalse(snapshot.matches(5, "name", null));
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.task;
+
+import com.gmail.filoghost.chestcommands.api.Icon;
+import com.gmail.filoghost.chestcommands.util.Utils;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClickDispatcherTest {
+
+	private final List<String> clicked = Utils.newArrayList();
+
+	@Test
+	public void executesInOrder() {
+		ClickDispatcher dispatcher = new ClickDispatcher();
+		Player player = createPlayer(true);
+		dispatcher.dispatch(player, new RecordingIcon("a"));
+		dispatcher.dispatch(player, new RecordingIcon("b"));
+		dispatcher.dispatch(player, new RecordingIcon("c"));
+
+		dispatcher.drain(0);
+		assertEquals(Arrays.asList("a", "b", "c"), clicked);
+		assertEquals(0, dispatcher.getPendingClicks());
+	}
+
+	@Test
+	public void limitKeepsTheRemainingClicks() {
+		ClickDispatcher dispatcher = new ClickDispatcher();
+		Player player = createPlayer(true);
+		for (int i = 0; i < 5; i++) {
+			dispatcher.dispatch(player, new RecordingIcon(String.valueOf(i)));
+		}
+
+		dispatcher.drain(2);
+		assertEquals(Arrays.asList("0", "1"), clicked);
+		assertEquals(3, dispatcher.getPendingClicks());
+
+		dispatcher.drain(2);
+		dispatcher.drain(2);
+		assertEquals(Arrays.asList("0", "1", "2", "3", "4"), clicked);
+		assertEquals(0, dispatcher.getPendingClicks());
+	}
+
+	@Test
+	public void skipsOfflinePlayers() {
+		ClickDispatcher dispatcher = new ClickDispatcher();
+		dispatcher.dispatch(createPlayer(false), new RecordingIcon("offline"));
+		dispatcher.dispatch(createPlayer(true), new RecordingIcon("online"));
+
+		dispatcher.drain(0);
+		assertEquals(Arrays.asList("online"), clicked);
+	}
+
+	@Test
+	public void closesTheInventoryWhenRequested() {
+		ClickDispatcher dispatcher = new ClickDispatcher();
+		Player player = createPlayer(true);
+		dispatcher.dispatch(player, new RecordingIcon("close", true));
+
+		dispatcher.drain(0);
+		assertTrue(clicked.contains("closeInventory"));
+	}
+
+	private Player createPlayer(final boolean online) {
+		return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] {Player.class}, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("isOnline")) {
+					return online;
+				} else if (method.getName().equals("closeInventory")) {
+					clicked.add("closeInventory");
+				} else if (method.getName().equals("getName")) {
+					return "player";
+				}
+				return null;
+			}
+		});
+	}
+
+
+	private class RecordingIcon extends Icon {
+
+		private final String name;
+		private final boolean close;
+
+		private RecordingIcon(String name) {
+			this(name, false);
+		}
+
+		private RecordingIcon(String name, boolean close) {
+			this.name = name;
+			this.close = close;
+		}
+
+		@Override
+		public boolean onClick(Player whoClicked) {
+			clicked.add(name);
+			return close;
+		}
+	}
+
+}
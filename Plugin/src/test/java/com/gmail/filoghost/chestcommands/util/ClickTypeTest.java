@@ -0,0 +1,56 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.util;
+
+import org.bukkit.event.block.Action;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClickTypeTest {
+
+	@Test
+	public void masksOfActions() {
+		assertEquals(ClickType.LEFT.getMask(), ClickType.getMask(Action.LEFT_CLICK_AIR));
+		assertEquals(ClickType.LEFT.getMask(), ClickType.getMask(Action.LEFT_CLICK_BLOCK));
+		assertEquals(ClickType.RIGHT.getMask(), ClickType.getMask(Action.RIGHT_CLICK_AIR));
+		assertEquals(ClickType.RIGHT.getMask(), ClickType.getMask(Action.RIGHT_CLICK_BLOCK));
+		assertEquals(0, ClickType.getMask(Action.PHYSICAL));
+		assertEquals(ClickType.BOTH.getMask(), ClickType.LEFT.getMask() | ClickType.RIGHT.getMask());
+	}
+
+	@Test
+	public void validInteract() {
+		assertTrue(ClickType.LEFT.isValidInteract(Action.LEFT_CLICK_AIR));
+		assertFalse(ClickType.LEFT.isValidInteract(Action.RIGHT_CLICK_AIR));
+		assertTrue(ClickType.RIGHT.isValidInteract(Action.RIGHT_CLICK_BLOCK));
+		assertFalse(ClickType.RIGHT.isValidInteract(Action.LEFT_CLICK_BLOCK));
+		assertTrue(ClickType.BOTH.isValidInteract(Action.LEFT_CLICK_BLOCK));
+		assertTrue(ClickType.BOTH.isValidInteract(Action.RIGHT_CLICK_AIR));
+		assertFalse(ClickType.BOTH.isValidInteract(Action.PHYSICAL));
+	}
+
+	@Test
+	public void fromOptions() {
+		assertEquals(ClickType.BOTH, ClickType.fromOptions(true, true));
+		assertEquals(ClickType.LEFT, ClickType.fromOptions(true, false));
+		assertEquals(ClickType.RIGHT, ClickType.fromOptions(false, true));
+		assertNull(ClickType.fromOptions(false, false));
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CooldownTableTest {
+
+	private final UUID player = UUID.randomUUID();
+	private final UUID otherPlayer = UUID.randomUUID();
+	private final Object icon = new Object();
+	private final Object menu = new Object();
+
+	@Test
+	public void cooldownExpires() {
+		CooldownTable table = new CooldownTable();
+
+		assertTrue(table.tryStart(player, null, 1000, 200));
+		assertFalse(table.tryStart(player, null, 1100, 200));
+		assertFalse(table.tryStart(player, null, 1199, 200));
+		assertTrue(table.tryStart(player, null, 1200, 200));
+		assertEquals(1, table.size());
+	}
+
+	@Test
+	public void scopesAreSeparate() {
+		CooldownTable table = new CooldownTable();
+
+		assertTrue(table.tryStart(player, icon, 1000, 60000));
+		assertTrue(table.tryStart(player, menu, 1000, 200));
+		assertTrue(table.tryStart(player, null, 1000, 200));
+
+		// The long cooldown of the icon doesn't block the other scopes
+		assertFalse(table.tryStart(player, icon, 2000, 60000));
+		assertTrue(table.tryStart(player, menu, 2000, 200));
+		assertTrue(table.tryStart(player, null, 2000, 200));
+	}
+
+	@Test
+	public void playersAreSeparate() {
+		CooldownTable table = new CooldownTable();
+
+		assertTrue(table.tryStart(player, icon, 1000, 200));
+		assertTrue(table.tryStart(otherPlayer, icon, 1000, 200));
+		assertFalse(table.tryStart(otherPlayer, icon, 1100, 200));
+	}
+
+	@Test
+	public void removeAllScopesOfPlayer() {
+		CooldownTable table = new CooldownTable();
+
+		table.tryStart(player, icon, 1000, 60000);
+		table.tryStart(player, null, 1000, 60000);
+		table.tryStart(otherPlayer, icon, 1000, 60000);
+
+		table.remove(player);
+
+		assertEquals(1, table.size());
+		assertTrue(table.tryStart(player, icon, 1100, 60000));
+		assertTrue(table.tryStart(player, null, 1100, 60000));
+		assertFalse(table.tryStart(otherPlayer, icon, 1100, 60000));
+	}
+
+	@Test
+	public void growAndSweep() {
+		CooldownTable table = new CooldownTable();
+		List<UUID> players = Utils.newArrayList();
+
+		for (int i = 0; i < 5000; i++) {
+			UUID id = UUID.randomUUID();
+			players.add(id);
+			assertTrue(table.tryStart(id, i % 2 == 0 ? icon : null, 1000, 500));
+		}
+
+		assertEquals(5000, table.size());
+		for (int i = 0; i < players.size(); i++) {
+			assertFalse(table.tryStart(players.get(i), i % 2 == 0 ? icon : null, 1200, 500));
+		}
+
+		table.sweep(1500);
+
+		assertEquals(0, table.size());
+		assertEquals(16, table.capacity());
+	}
+
+	@Test
+	public void periodicSweepKeepsActiveCooldowns() {
+		CooldownTable table = new CooldownTable();
+
+		table.tryStart(player, icon, 1000, 200);
+		table.tryStart(otherPlayer, icon, 1000, 120000);
+
+		// The first call after the interval sweeps the expired entries
+		assertTrue(table.tryStart(UUID.randomUUID(), null, 70000, 200));
+
+		assertEquals(2, table.size());
+		assertFalse(table.tryStart(otherPlayer, icon, 70000, 120000));
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.util;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class InventoryUtilsTest {
+
+	@Test
+	public void bufferIsReusedForTheSameSize() {
+		ItemStack[] buffer = InventoryUtils.getContentsBuffer(27);
+		assertEquals(27, buffer.length);
+		assertSame(buffer, InventoryUtils.getContentsBuffer(27));
+		assertNotSame(buffer, InventoryUtils.getContentsBuffer(54));
+	}
+
+	@Test
+	public void bufferIsEmptiedAfterUse() {
+		ItemStack[] buffer = InventoryUtils.getContentsBuffer(9);
+		buffer[4] = new ItemStack(Material.STONE);
+
+		ContentsRecorder recorder = new ContentsRecorder();
+		Inventory inventory = (Inventory) Proxy.newProxyInstance(Inventory.class.getClassLoader(), new Class<?>[] {Inventory.class}, recorder);
+		InventoryUtils.setContents(inventory, buffer);
+
+		assertEquals(Material.STONE, recorder.contents[4].getType());
+		assertNull(buffer[4]);
+	}
+
+	@Test
+	public void bufferIsEmptiedIfNotUsed() {
+		ItemStack[] buffer = InventoryUtils.getContentsBuffer(18);
+		buffer[0] = new ItemStack(Material.STONE);
+
+		assertNull(InventoryUtils.getContentsBuffer(18)[0]);
+	}
+
+	@Test
+	public void unusualSizesAreNotReused() {
+		ItemStack[] buffer = InventoryUtils.getContentsBuffer(5);
+		assertEquals(5, buffer.length);
+		assertNotSame(buffer, InventoryUtils.getContentsBuffer(5));
+		assertNotSame(InventoryUtils.getContentsBuffer(63), InventoryUtils.getContentsBuffer(63));
+	}
+
+
+	private static class ContentsRecorder implements InvocationHandler {
+
+		private ItemStack[] contents;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("setContents")) {
+				// Like the server, the inventory keeps its own copy
+				contents = ((ItemStack[]) args[0]).clone();
+			}
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.gmail.filoghost.chestcommands.util;
+
+import com.gmail.filoghost.chestcommands.util.TimingWheel.Timeout;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+	@Test
+	public void expiresOnTheDeadline() {
+		TimingWheel<Long> wheel = new TimingWheel<Long>();
+		long[] delays = {1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 100000};
+		for (long delay : delays) {
+			wheel.schedule(delay, delay);
+		}
+
+		List<Long> expired = Utils.newArrayList();
+		int found = 0;
+		while (wheel.getCurrentTick() < 100000) {
+			wheel.advance(expired);
+			for (Long delay : expired) {
+				assertEquals(delay.longValue(), wheel.getCurrentTick());
+				found++;
+			}
+			expired.clear();
+		}
+		assertEquals(delays.length, found);
+	}
+
+	@Test
+	public void expiresOnTheDeadlineAfterMoving() {
+		TimingWheel<Long> wheel = new TimingWheel<Long>();
+		Random random = new Random(1);
+		List<Long> expired = Utils.newArrayList();
+		int scheduled = 0;
+		int found = 0;
+
+		// Schedule from every position of the wheel, so that the upper levels are not aligned
+		while (wheel.getCurrentTick() < 20000) {
+			if (random.nextInt(4) == 0) {
+				long delay = 1 + random.nextInt(10000);
+				wheel.schedule(wheel.getCurrentTick() + delay, delay);
+				scheduled++;
+			}
+
+			wheel.advance(expired);
+			for (Long deadline : expired) {
+				assertEquals(deadline.longValue(), wheel.getCurrentTick());
+				found++;
+			}
+			expired.clear();
+		}
+
+		while (found < scheduled) {
+			wheel.advance(expired);
+			for (Long deadline : expired) {
+				assertEquals(deadline.longValue(), wheel.getCurrentTick());
+				found++;
+			}
+			expired.clear();
+			assertTrue(wheel.getCurrentTick() < 40000);
+		}
+	}
+
+	@Test
+	public void cancelledTasksAreSkipped() {
+		TimingWheel<String> wheel = new TimingWheel<String>();
+		Timeout<String> cancelled = wheel.schedule("cancelled", 100);
+		wheel.schedule("kept", 100);
+		cancelled.cancel();
+
+		List<String> expired = Utils.newArrayList();
+		for (int i = 0; i < 100; i++) {
+			wheel.advance(expired);
+		}
+		assertEquals(1, expired.size());
+		assertEquals("kept", expired.get(0));
+	}
+
+	@Test
+	public void delayIsAtLeastOneTick() {
+		TimingWheel<String> wheel = new TimingWheel<String>();
+		wheel.schedule("task", 0);
+
+		List<String> expired = Utils.newArrayList();
+		wheel.advance(expired);
+		assertEquals(1, expired.size());
+	}
+
+}